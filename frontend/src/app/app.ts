@@ -14,6 +14,8 @@ export class App {
   
   imageIndices = Array.from({length: 10}, (_, i) => i + 1);
   timestamp = Date.now();
+  // Per tab, so edits fine-tune this tab's last custom model and nobody else's
+  session = crypto.randomUUID();
 
   constructor(private http: HttpClient) {}
 
@@ -30,7 +32,7 @@ export class App {
     this.mode = 'custom';
     this.status = 'Training Custom Polygon...';
     
-    this.http.post('http://localhost:8080/api/points', points, { responseType: 'text' })
+    this.http.post('http://localhost:8080/api/points', points, { params: { session: this.session }, responseType: 'text' })
       .subscribe(this.handleResponse());
   }
 
@@ -7,9 +7,12 @@ interface VectorCommand {
   fillColor?: string; strokeColor?: string; lineWidth?: number;
 }
 interface SwfShape { charId: number; commands: VectorCommand[]; }
-interface SwfInstance { charId: number; depth: number; matrix: number[]; }
-interface SwfSprite { spriteId: number; frameCount: number; frames: SwfInstance[][]; }
-interface SwfResponse { name: string; shapes: SwfShape[]; sprites: SwfSprite[]; symbolMap: { [key: number]: string };}
+interface SwfTimelineOp { type: string; depth: number; charId: number; matrix: number; }
+interface SwfSprite {
+  spriteId: number; frameCount: number;
+  matrices: number[][]; keyframes: { [frame: number]: SwfTimelineOp[] }; deltas: SwfTimelineOp[][];
+}
+interface SwfResponse { uploadId: string; name: string; shapes: SwfShape[]; sprites: SwfSprite[]; symbolMap: { [key: number]: string };}
 interface Point { x: number; y: number; }
 interface Bounds { minX: number; maxX: number; minY: number; maxY: number; width: number; height: number; cx: number; cy: number; }
 interface ShapeVersion { name: string; commands: VectorCommand[]; }
@@ -28,6 +31,7 @@ export class PuzzleSolver {
   isDragging = false;
   resultUrl: string | null = null;
   importedShapeName: string | null = null;
+  uploadId: string | null = null;
   swfShapes: SwfShape[] = [];
   swfSprites: SwfSprite[] = [];
   screenHeight: number | null = null;
@@ -65,6 +69,7 @@ if(localStorage.getItem("cachedSwfShape")!= null){
         this.swfShapes = JSON.parse(localStorage.getItem("cachedSwfShape") ?? "null")
         this.swfSprites = JSON.parse(localStorage.getItem("swfSprites")?? "null")
         this.importedShapeName = JSON.parse(localStorage.getItem("importedShapeName")?? "null")
+        this.uploadId = JSON.parse(localStorage.getItem("uploadId")?? "null")
         this.symbolMap = JSON.parse(localStorage.getItem("symbolMap")?? "null")
         this.drawAtlas();
 }
@@ -76,6 +81,7 @@ const formData = new FormData();
     this.http.post<SwfResponse>(`${environment.apiUrl}/api/swf/upload`, formData).subscribe({
 next: (res) => {
         this.importedShapeName = res.name;
+        this.uploadId = res.uploadId;
         this.swfShapes = res.shapes;
         this.swfSprites = res.sprites;
         this.symbolMap = res.symbolMap || {};
@@ -538,6 +544,7 @@ let rowIndex = 0;
     localStorage.setItem("cachedSwfShape", JSON.stringify(this.swfShapes));
     console.log(localStorage.getItem("cachedSwfShape"))
     localStorage.setItem("importedShapeName",JSON.stringify(this.importedShapeName));
+    localStorage.setItem("uploadId", JSON.stringify(this.uploadId));
     localStorage.setItem("swfSprites", JSON.stringify(this.swfSprites));
     localStorage.setItem("symbolMap", JSON.stringify(this.symbolMap));
     console.log(localStorage.getItem("importedShapeName"))
@@ -721,6 +728,8 @@ solvePuzzle() {
     this.canvasRef.nativeElement.toBlob((blob) => {
 const formData = new FormData();
       formData.append('screenshot', blob!, 'screen.png');
+      formData.append('uploadId', this.uploadId ?? '');
+      formData.append('layerId', String(this.selectedShape?.charId ?? -1));
       this.http.post(`${environment.apiUrl}/api/puzzle/solve`, formData)
 .subscribe(() => {
 setTimeout(() => {
@@ -6,8 +6,13 @@ interface VectorCommand {
   fillColor?: string; strokeColor?: string; lineWidth?: number;
 }
 interface SwfShape { charId: number; commands: VectorCommand[]; }
-interface SwfInstance { charId: number; depth: number; matrix: number[]; }
-interface SwfSprite { spriteId: number; frameCount: number; frames: SwfInstance[][]; }
+interface SwfInstance { charId: number; depth: number; matrix?: number[]; }
+interface SwfTimelineOp { type: string; depth: number; charId: number; matrix: number; }
+interface SwfSprite {
+  spriteId: number; frameCount: number;
+  matrices: number[][]; keyframes: { [frame: number]: SwfTimelineOp[] }; deltas: SwfTimelineOp[][];
+  frames: SwfInstance[][]; // Not sent by the backend, decoded from keyframes + deltas
+}
 interface Point { x: number; y: number; }
 interface Bounds { minX: number; maxX: number; minY: number; maxY: number; }
 
@@ -47,7 +52,10 @@ export class SpriteViewer implements OnChanges {
     if (changes['sprites'] && this.sprites) {
       this.spriteMap.clear();
       this.boundsCache.clear();
-      this.sprites.forEach(s => this.spriteMap.set(s.spriteId, s));
+      this.sprites.forEach(s => {
+        if (!s.frames) s.frames = this.decodeFrames(s);
+        this.spriteMap.set(s.spriteId, s);
+      });
       
       if (this.sprites.length > 0 && !this.selectedSpriteId) {
         this.selectSprite(this.sprites[0].spriteId);
@@ -91,6 +99,27 @@ export class SpriteViewer implements OnChanges {
     this.renderFrame();
   }
 
+  // --- TIMELINE DECODING ---
+  // Replays the delta-encoded timeline once. Unchanged instances (and matrices) are shared between frames.
+  decodeFrames(sprite: SwfSprite): SwfInstance[][] {
+    const frames: SwfInstance[][] = [];
+    const state = new Map<number, SwfInstance>();
+    (sprite.keyframes?.[0] || []).forEach(op => this.applyOp(state, op, sprite.matrices));
+    (sprite.deltas || []).forEach((delta, f) => {
+      if (f > 0) delta.forEach(op => this.applyOp(state, op, sprite.matrices));
+      frames.push(Array.from(state.values()));
+    });
+    return frames;
+  }
+
+  applyOp(state: Map<number, SwfInstance>, op: SwfTimelineOp, matrices: number[][]) {
+    if (op.type === 'REMOVE') {
+      state.delete(op.depth);
+      return;
+    }
+    state.set(op.depth, { charId: op.charId, depth: op.depth, matrix: op.matrix >= 0 ? matrices[op.matrix] : undefined });
+  }
+
   // --- HELPER: Fix Zero Scales ---
   // If ScaleX or ScaleY is ~0, force it to 1 so the object is visible.
   sanitizeMatrix(m: number[]): number[] {
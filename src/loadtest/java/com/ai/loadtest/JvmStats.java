@@ -0,0 +1,91 @@
+package com.ai.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Heap and GC over the measured phase. Heap use is sampled every SAMPLE_MS, GC counts and
+// times are the difference between the collector MXBeans at start and at summary().
+class JvmStats implements AutoCloseable {
+
+    private static final long SAMPLE_MS = 100;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final Map<String, long[]> gcAtStart = gcCounters();
+    private final long startNanos = System.nanoTime();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "loadtest-heap-sampler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private long peakHeap;
+    private long heapSum;
+    private long samples;
+
+    JvmStats() {
+        sampler.scheduleAtFixedRate(this::sample, 0, SAMPLE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void sample() {
+        long used = memory.getHeapMemoryUsage().getUsed();
+        peakHeap = Math.max(peakHeap, used);
+        heapSum += used;
+        samples++;
+    }
+
+    synchronized Map<String, Object> summary() {
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        Map<String, Object> heapStats = new LinkedHashMap<>();
+        heapStats.put("peakBytes", Math.max(peakHeap, heap.getUsed()));
+        heapStats.put("avgBytes", samples > 0 ? heapSum / samples : heap.getUsed());
+        heapStats.put("usedBytes", heap.getUsed());
+        heapStats.put("committedBytes", heap.getCommitted());
+        heapStats.put("maxBytes", heap.getMax());
+
+        Map<String, Object> collectors = new LinkedHashMap<>();
+        long count = 0, millis = 0;
+        for (Map.Entry<String, long[]> gc : gcCounters().entrySet()) {
+            long[] start = gcAtStart.getOrDefault(gc.getKey(), new long[2]);
+            long c = gc.getValue()[0] - start[0];
+            long ms = gc.getValue()[1] - start[1];
+            Map<String, Object> collector = new LinkedHashMap<>();
+            collector.put("count", c);
+            collector.put("timeMs", ms);
+            collectors.put(gc.getKey(), collector);
+            count += c;
+            millis += ms;
+        }
+        double wallMs = (System.nanoTime() - startNanos) / 1e6;
+        Map<String, Object> gcStats = new LinkedHashMap<>();
+        gcStats.put("count", count);
+        gcStats.put("timeMs", millis);
+        // Share of wall time spent in collections; concurrent collectors report cycle time here
+        gcStats.put("timeShare", wallMs > 0 ? millis / wallMs : 0.0);
+        gcStats.put("collectors", collectors);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("heap", heapStats);
+        summary.put("gc", gcStats);
+        return summary;
+    }
+
+    private static Map<String, long[]> gcCounters() {
+        Map<String, long[]> counters = new LinkedHashMap<>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            counters.put(gc.getName(), new long[] {Math.max(0, gc.getCollectionCount()), Math.max(0, gc.getCollectionTime())});
+        }
+        return counters;
+    }
+
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+    }
+}
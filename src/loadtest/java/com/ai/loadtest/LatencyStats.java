@@ -0,0 +1,76 @@
+package com.ai.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Outcomes of one endpoint over one phase of a run. Every 2xx latency is kept (a run is tens of
+// thousands of requests at most), so the percentiles are exact rather than bucketed.
+// 429 / 503 count as rejected: that's the server shedding load as designed (SwfParseLimiter,
+// full training queue), not failing.
+class LatencyStats {
+
+    private long[] micros = new long[1024];
+    private int ok;
+    private long rejected;
+    private long errors;
+    private long ioErrors;
+    private long dropped;
+    private final Map<Integer, Long> statuses = new TreeMap<>();
+
+    synchronized void record(int status, long nanos) {
+        statuses.merge(status, 1L, Long::sum);
+        if (status >= 200 && status < 300) {
+            if (ok == micros.length) micros = Arrays.copyOf(micros, ok * 2);
+            micros[ok++] = nanos / 1000;
+        } else if (status == 429 || status == 503) {
+            rejected++;
+        } else {
+            errors++;
+        }
+    }
+
+    // Timeouts, refused connections and requests that couldn't be built
+    synchronized void recordIoError() {
+        ioErrors++;
+    }
+
+    // Not sent because max-in-flight requests were already outstanding
+    synchronized void recordDropped() {
+        dropped++;
+    }
+
+    synchronized Map<String, Object> summary(double seconds) {
+        long[] sorted = Arrays.copyOf(micros, ok);
+        Arrays.sort(sorted);
+        long sent = ok + rejected + errors + ioErrors;
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("sent", sent);
+        summary.put("ok", ok);
+        summary.put("rejected", rejected);
+        summary.put("errors", errors + ioErrors);
+        summary.put("dropped", dropped);
+        summary.put("statuses", new TreeMap<>(statuses));
+        summary.put("throughput", seconds > 0 ? ok / seconds : 0.0);
+        summary.put("errorRate", sent > 0 ? (double) (errors + ioErrors) / sent : 0.0);
+        summary.put("rejectRate", sent > 0 ? (double) rejected / sent : 0.0);
+        long total = 0;
+        for (long m : sorted) total += m;
+        summary.put("meanMs", ok > 0 ? total / 1e3 / ok : 0.0);
+        summary.put("p50Ms", percentile(sorted, 0.50));
+        summary.put("p90Ms", percentile(sorted, 0.90));
+        summary.put("p99Ms", percentile(sorted, 0.99));
+        summary.put("p999Ms", percentile(sorted, 0.999));
+        summary.put("maxMs", sorted.length > 0 ? sorted[sorted.length - 1] / 1e3 : 0.0);
+        return summary;
+    }
+
+    // Nearest rank
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0.0;
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e3;
+    }
+}
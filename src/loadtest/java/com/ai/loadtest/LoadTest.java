@@ -0,0 +1,499 @@
+package com.ai.loadtest;
+
+import com.ai.AiApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Boots the whole app on a random port and replays a weighted mix of requests against it at a
+// fixed rate: SWF uploads, /api/points and /api/train runs, puzzle solves and the SOAP log.
+// Reports throughput, latency percentiles, heap and GC, writes the result as JSON and compares
+// it with the stored baseline of the scenario, so regressions show up from one run to the next.
+//
+//   mvn -Ploadtest verify -DskipTests -Dloadtest.scenario=swf-burst
+//   mvn -Ploadtest verify -DskipTests -Dloadtest.jvmArgs="-Xmx2g -Dloadtest.update-baseline=true"
+//
+// Scenarios are properties files under scenarios/ on the classpath, or a path. Any key can be
+// overridden with -Dloadtest.<key> in the load test JVM. Keys:
+//   rps=10                   duration-seconds=60           warmup-seconds=10
+//   mix.<endpoint>=<weight>  max-in-flight=256             request-timeout-ms=30000
+//   swf-samples=small,medium (rotation for swf-upload, see SampleData)
+//   points-sessions=8        seed=42                       samples-dir=<dir of extra *.swf>
+//   regression-threshold=0.2 fail-on-regression=false      update-baseline=false
+//   baseline-dir=loadtest-baselines                        results-dir=.
+// Endpoints: swf-upload, points, train, puzzle-solve, soap-log.
+//
+// The generator is open-loop: request i is due at start + i / rps whether or not the earlier
+// ones have come back, and its latency counts from when it was due. A slow server shows up as
+// latency instead of quietly lowering the offered rate. Requests past max-in-flight are dropped
+// and counted instead of queueing in the client.
+//
+// App and generator share the JVM, so heap and GC include the client, which allocates little
+// next to SWF parsing and training. Baselines only compare on the same machine and JVM flags;
+// the environment is stored with every result and a mismatch is printed with the comparison.
+public class LoadTest {
+
+    static final List<String> ENDPOINTS = List.of("swf-upload", "points", "train", "puzzle-solve", "soap-log");
+
+    private static final String BOUNDARY = "loadtest-boundary-7d3f1c";
+    private static final double MIN_LATENCY_DELTA_MS = 1.0;
+
+    private final URI base;
+    private final Properties config;
+    private final SampleData samples;
+    private final SplittableRandom rnd;
+    private final HttpClient client;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Duration requestTimeout;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final String[] mixNames;
+    private final int[] mixCumulative;
+    private final List<String> swfRotation = new ArrayList<>();
+    private final Map<String, byte[]> swfBodies = new HashMap<>();
+    private final int pointsSessions;
+
+    // uploadId and charId of the fixture SWF's shape, re-uploaded when the layer store evicts it
+    private volatile String[] puzzleFixture;
+    private final AtomicBoolean refreshingFixture = new AtomicBoolean();
+
+    public static void main(String[] args) {
+        int exitCode;
+        try {
+            exitCode = run(args.length > 0 ? args[0] : "default");
+        } catch (Exception e) {
+            e.printStackTrace();
+            exitCode = 1;
+        }
+        System.exit(exitCode);
+    }
+
+    static int run(String scenario) throws Exception {
+        Properties config = loadScenario(scenario);
+        String name = Paths.get(scenario).getFileName().toString().replaceFirst("\\.properties$", "");
+        long seed = Long.parseLong(config.getProperty("seed", "42"));
+        double rps = Double.parseDouble(config.getProperty("rps", "10"));
+        int warmupSeconds = Integer.parseInt(config.getProperty("warmup-seconds", "10"));
+        int durationSeconds = Integer.parseInt(config.getProperty("duration-seconds", "60"));
+        Path resultsDir = Paths.get(config.getProperty("results-dir", "."));
+        Path workDir = resultsDir.resolve("work-" + name).toAbsolutePath();
+
+        SampleData samples = SampleData.generate(config, seed);
+        System.out.println("Load test '" + name + "': " + rps + " req/s for " + durationSeconds + " s after "
+                + warmupSeconds + " s warm-up, " + samples.swfs.size() + " SWFs, "
+                + samples.screenshots.size() + " screenshots, " + samples.pointLists.size() + " point lists");
+
+        // Command-line args, so they win over application.properties
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(AiApplication.class).run(
+                "--server.port=0",
+                "--checkpoints.dir=" + workDir.resolve("Checkpoints"),
+                "--datasets.dir=" + workDir.resolve("Datasets"));
+        Map<String, Object> result;
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            LoadTest test = new LoadTest(URI.create("http://localhost:" + port), config, samples, seed);
+            test.uploadPuzzleFixture();
+
+            if (warmupSeconds > 0) {
+                System.out.println("Warming up...");
+                test.drive(rps, warmupSeconds);
+            }
+            System.out.println("Measuring...");
+            System.gc();
+            Map<String, Object> endpoints = new LinkedHashMap<>();
+            Map<String, Object> jvm;
+            double elapsed;
+            try (JvmStats jvmStats = new JvmStats()) {
+                long start = System.nanoTime();
+                Map<String, LatencyStats> stats = test.drive(rps, durationSeconds);
+                elapsed = (System.nanoTime() - start) / 1e9;
+                for (Map.Entry<String, LatencyStats> e : stats.entrySet()) {
+                    endpoints.put(e.getKey(), e.getValue().summary(elapsed));
+                }
+                jvm = jvmStats.summary();
+            }
+
+            result = new LinkedHashMap<>();
+            result.put("scenario", name);
+            result.put("timestamp", LocalDateTime.now().toString());
+            result.put("environment", environment());
+            Map<String, Object> settings = new LinkedHashMap<>();
+            settings.put("rps", rps);
+            settings.put("durationSeconds", durationSeconds);
+            settings.put("warmupSeconds", warmupSeconds);
+            settings.put("maxInFlight", test.maxInFlight);
+            settings.put("mix", test.mix());
+            settings.put("swfSamples", test.swfRotation);
+            result.put("run", settings);
+            result.put("elapsedSeconds", elapsed);
+            result.put("endpoints", endpoints);
+            result.put("jvm", jvm);
+            result.put("swfParse", test.getJson("/api/swf/parse-stats"));
+        } finally {
+            SpringApplication.exit(context);
+        }
+
+        System.out.println(report(result));
+
+        Files.createDirectories(resultsDir);
+        Path resultFile = resultsDir.resolve(name + "-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.writerWithDefaultPrettyPrinter().writeValue(resultFile.toFile(), result);
+        System.out.println("Result written to " + resultFile.toAbsolutePath());
+
+        Path baselineFile = Paths.get(config.getProperty("baseline-dir", "loadtest-baselines")).resolve(name + ".json");
+        int exitCode = 0;
+        if (Files.exists(baselineFile)) {
+            JsonNode baseline = mapper.readTree(baselineFile.toFile());
+            double threshold = Double.parseDouble(config.getProperty("regression-threshold", "0.2"));
+            List<String> regressions = compare(baseline, mapper.valueToTree(result), threshold);
+            if (regressions.isEmpty()) {
+                System.out.println("No regressions against " + baselineFile + " (threshold " + threshold + ")");
+            } else {
+                System.out.println(regressions.size() + " regression(s) against " + baselineFile + ":");
+                regressions.forEach(r -> System.out.println("  " + r));
+                if (Boolean.parseBoolean(config.getProperty("fail-on-regression", "false"))) exitCode = 2;
+            }
+        }
+        if (!Files.exists(baselineFile) || Boolean.parseBoolean(config.getProperty("update-baseline", "false"))) {
+            Files.createDirectories(baselineFile.toAbsolutePath().getParent());
+            Files.copy(resultFile, baselineFile, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Baseline written to " + baselineFile.toAbsolutePath());
+        }
+        return exitCode;
+    }
+
+    LoadTest(URI base, Properties config, SampleData samples, long seed) {
+        this.base = base;
+        this.config = config;
+        this.samples = samples;
+        this.rnd = new SplittableRandom(seed);
+        this.requestTimeout = Duration.ofMillis(Long.parseLong(config.getProperty("request-timeout-ms", "30000")));
+        this.maxInFlight = Integer.parseInt(config.getProperty("max-in-flight", "256"));
+        this.pointsSessions = Math.max(1, Integer.parseInt(config.getProperty("points-sessions", "8")));
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        List<String> names = new ArrayList<>();
+        List<Integer> cumulative = new ArrayList<>();
+        int total = 0;
+        for (String key : new TreeSet<>(config.stringPropertyNames())) {
+            if (!key.startsWith("mix.")) continue;
+            String endpoint = key.substring(4);
+            if (!ENDPOINTS.contains(endpoint)) throw new IllegalArgumentException("Unknown endpoint in " + key + ", expected one of " + ENDPOINTS);
+            int weight = Integer.parseInt(config.getProperty(key).trim());
+            if (weight <= 0) continue;
+            total += weight;
+            names.add(endpoint);
+            cumulative.add(total);
+        }
+        if (total == 0) throw new IllegalArgumentException("Scenario has no mix.<endpoint> weights");
+        this.mixNames = names.toArray(new String[0]);
+        this.mixCumulative = cumulative.stream().mapToInt(Integer::intValue).toArray();
+
+        for (String sample : config.getProperty("swf-samples", "small,medium").split(",")) {
+            if (sample.isBlank()) continue;
+            if (!samples.swfs.containsKey(sample.trim())) throw new IllegalArgumentException("Unknown SWF sample " + sample + ", have " + samples.swfs.keySet());
+            swfRotation.add(sample.trim());
+        }
+        if (swfRotation.isEmpty()) swfRotation.addAll(samples.swfs.keySet());
+        // Multipart bodies of the SWFs are the same every time, build them once
+        for (Map.Entry<String, byte[]> swf : samples.swfs.entrySet()) {
+            swfBodies.put(swf.getKey(), new Multipart()
+                    .file("file", swf.getKey() + ".swf", "application/x-shockwave-flash", swf.getValue())
+                    .bytes());
+        }
+    }
+
+    private Map<String, Integer> mix() {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (int i = 0; i < mixNames.length; i++) mix.put(mixNames[i], mixCumulative[i] - (i > 0 ? mixCumulative[i - 1] : 0));
+        return mix;
+    }
+
+    // Sends round(rps * seconds) requests on schedule, then waits up to the request timeout for
+    // the outstanding ones
+    private Map<String, LatencyStats> drive(double rps, int seconds) throws InterruptedException {
+        Map<String, LatencyStats> stats = new TreeMap<>();
+        for (String endpoint : mixNames) stats.put(endpoint, new LatencyStats());
+
+        long interval = (long) (1e9 / rps);
+        long total = Math.round(rps * seconds);
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long due = start + i * interval;
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+
+            String endpoint = pick();
+            LatencyStats s = stats.get(endpoint);
+            if (inFlight.get() >= maxInFlight) {
+                s.recordDropped();
+                continue;
+            }
+            HttpRequest request = build(endpoint);
+            if (request == null) {
+                s.recordIoError();
+                continue;
+            }
+            inFlight.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, error) -> {
+                long nanos = System.nanoTime() - due;
+                inFlight.decrementAndGet();
+                if (error != null) {
+                    s.recordIoError();
+                    return;
+                }
+                s.record(response.statusCode(), nanos);
+                if ("puzzle-solve".equals(endpoint) && response.statusCode() == 404) refreshPuzzleFixture();
+            });
+        }
+
+        long deadline = System.nanoTime() + requestTimeout.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) Thread.sleep(10);
+        if (inFlight.get() > 0) System.out.println(inFlight.get() + " requests still outstanding after the drain timeout");
+        return stats;
+    }
+
+    private String pick() {
+        int r = rnd.nextInt(mixCumulative[mixCumulative.length - 1]);
+        for (int i = 0; i < mixCumulative.length; i++) {
+            if (r < mixCumulative[i]) return mixNames[i];
+        }
+        return mixNames[mixNames.length - 1];
+    }
+
+    private HttpRequest build(String endpoint) {
+        switch (endpoint) {
+            case "swf-upload": {
+                String sample = swfRotation.get(rnd.nextInt(swfRotation.size()));
+                return swfUpload(sample);
+            }
+            case "points": {
+                byte[] points = samples.pointLists.get(rnd.nextInt(samples.pointLists.size()));
+                return request("/api/points?session=loadtest-" + rnd.nextInt(pointsSessions))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(points))
+                        .build();
+            }
+            case "train":
+                return request("/api/train").POST(HttpRequest.BodyPublishers.noBody()).build();
+            case "puzzle-solve": {
+                String[] fixture = puzzleFixture;
+                if (fixture == null) return null;
+                byte[] screenshot = samples.screenshots.get(rnd.nextInt(samples.screenshots.size()));
+                byte[] body = new Multipart()
+                        .file("screenshot", "screenshot.png", "image/png", screenshot)
+                        .field("uploadId", fixture[0])
+                        .field("layerId", fixture[1])
+                        .bytes();
+                return request("/api/puzzle/solve")
+                        .header("Content-Type", Multipart.CONTENT_TYPE)
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                        .build();
+            }
+            case "soap-log":
+                return request("/ws")
+                        .header("Content-Type", "text/xml; charset=utf-8")
+                        .header("SOAPAction", "\"\"")
+                        .POST(HttpRequest.BodyPublishers.ofString(SampleData.SOAP_LOG_REQUEST))
+                        .build();
+            default:
+                throw new IllegalArgumentException("Unknown endpoint " + endpoint);
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).timeout(requestTimeout);
+    }
+
+    private HttpRequest swfUpload(String sample) {
+        String tolerance = config.getProperty("swf-tolerance");
+        return request("/api/swf/upload" + (tolerance != null ? "?tolerance=" + tolerance : ""))
+                .header("Content-Type", Multipart.CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(swfBodies.get(sample)))
+                .build();
+    }
+
+    private void uploadPuzzleFixture() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(swfUpload(SampleData.FIXTURE_SWF), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Uploading the puzzle fixture SWF failed with HTTP " + response.statusCode()
+                    + ": " + new String(response.body(), StandardCharsets.UTF_8));
+        }
+        puzzleFixture = parseFixture(response.body());
+        System.out.println("Puzzle fixture: upload " + puzzleFixture[0] + ", shape " + puzzleFixture[1]);
+    }
+
+    private String[] parseFixture(byte[] body) throws IOException {
+        JsonNode upload = mapper.readTree(body);
+        return new String[] {upload.path("uploadId").asText(), String.valueOf(upload.path("shapes").path(0).path("charId").asInt(-1))};
+    }
+
+    // The fixture's upload got evicted by the SWF uploads of the mix, put it back once
+    private void refreshPuzzleFixture() {
+        if (!refreshingFixture.compareAndSet(false, true)) return;
+        client.sendAsync(swfUpload(SampleData.FIXTURE_SWF), HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, error) -> {
+            try {
+                if (response != null && response.statusCode() == 200) puzzleFixture = parseFixture(response.body());
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                refreshingFixture.set(false);
+            }
+        });
+    }
+
+    private Object getJson(String path) {
+        try {
+            HttpResponse<byte[]> response = client.send(request(path).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+            return response.statusCode() == 200 ? mapper.readValue(response.body(), Map.class) : null;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    static Properties loadScenario(String scenario) throws IOException {
+        Properties config = new Properties();
+        Path file = Paths.get(scenario);
+        if (Files.isRegularFile(file)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                config.load(reader);
+            }
+        } else {
+            try (InputStream in = LoadTest.class.getResourceAsStream("/scenarios/" + scenario + ".properties")) {
+                if (in == null) throw new IllegalArgumentException("Unknown scenario " + scenario);
+                config.load(in);
+            }
+        }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("loadtest.")) config.setProperty(key.substring("loadtest.".length()), System.getProperty(key));
+        }
+        return config;
+    }
+
+    private static Map<String, Object> environment() {
+        Map<String, Object> env = new LinkedHashMap<>();
+        env.put("java", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        env.put("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        env.put("cpus", Runtime.getRuntime().availableProcessors());
+        env.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        env.put("jvmArgs", String.join(" ", java.lang.management.ManagementFactory.getRuntimeMXBean().getInputArguments()));
+        return env;
+    }
+
+    static String report(Map<String, Object> result) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-13s %7s %7s %6s %6s %6s %8s %9s %9s %9s %9s %9s%n",
+                "endpoint", "sent", "ok", "rej", "err", "drop", "ok/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> endpoints = (Map<String, Map<String, Object>>) result.get("endpoints");
+        for (Map.Entry<String, Map<String, Object>> e : endpoints.entrySet()) {
+            Map<String, Object> s = e.getValue();
+            sb.append(String.format("%-13s %7d %7d %6d %6d %6d %8.2f %9.1f %9.1f %9.1f %9.1f %9.1f%n", e.getKey(),
+                    s.get("sent"), s.get("ok"), s.get("rejected"), s.get("errors"), s.get("dropped"), s.get("throughput"),
+                    s.get("p50Ms"), s.get("p90Ms"), s.get("p99Ms"), s.get("p999Ms"), s.get("maxMs")));
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> jvm = (Map<String, Map<String, Object>>) result.get("jvm");
+        Map<String, Object> heap = jvm.get("heap");
+        Map<String, Object> gc = jvm.get("gc");
+        sb.append(String.format("heap: peak %.1f MB, avg %.1f MB, committed %.1f MB%n",
+                (Long) heap.get("peakBytes") / 1048576.0, (Long) heap.get("avgBytes") / 1048576.0, (Long) heap.get("committedBytes") / 1048576.0));
+        sb.append(String.format("gc:   %d collections, %d ms (%.2f%% of wall time) %s%n",
+                gc.get("count"), gc.get("timeMs"), 100 * (Double) gc.get("timeShare"), gc.get("collectors")));
+        return sb.toString();
+    }
+
+    // Worse than the baseline by more than `threshold` (relative) on latency, throughput, heap
+    // or GC time, or by more than a point on error / reject rate
+    static List<String> compare(JsonNode baseline, JsonNode result, double threshold) {
+        List<String> regressions = new ArrayList<>();
+        if (!baseline.path("environment").equals(result.path("environment"))) {
+            System.out.println("Note: baseline was recorded in a different environment " + baseline.path("environment"));
+        }
+        if (!baseline.path("run").equals(result.path("run"))) {
+            System.out.println("Note: baseline was recorded with different run settings " + baseline.path("run"));
+        }
+
+        Iterator<Map.Entry<String, JsonNode>> endpoints = result.path("endpoints").fields();
+        while (endpoints.hasNext()) {
+            Map.Entry<String, JsonNode> e = endpoints.next();
+            JsonNode before = baseline.path("endpoints").path(e.getKey());
+            if (before.isMissingNode()) continue;
+            JsonNode now = e.getValue();
+            for (String key : List.of("p50Ms", "p90Ms", "p99Ms")) {
+                double b = before.path(key).asDouble(), n = now.path(key).asDouble();
+                if (n > b * (1 + threshold) && n - b > MIN_LATENCY_DELTA_MS) {
+                    regressions.add(String.format("%s %s %.1f -> %.1f", e.getKey(), key, b, n));
+                }
+            }
+            double b = before.path("throughput").asDouble(), n = now.path("throughput").asDouble();
+            if (n < b * (1 - threshold)) regressions.add(String.format("%s throughput %.2f -> %.2f req/s", e.getKey(), b, n));
+            for (String key : List.of("errorRate", "rejectRate")) {
+                b = before.path(key).asDouble();
+                n = now.path(key).asDouble();
+                if (n > b + 0.01) regressions.add(String.format("%s %s %.3f -> %.3f", e.getKey(), key, b, n));
+            }
+        }
+
+        double b = baseline.path("jvm").path("heap").path("peakBytes").asDouble();
+        double n = result.path("jvm").path("heap").path("peakBytes").asDouble();
+        if (b > 0 && n > b * (1 + threshold)) regressions.add(String.format("peak heap %.1f -> %.1f MB", b / 1048576, n / 1048576));
+        b = baseline.path("jvm").path("gc").path("timeShare").asDouble();
+        n = result.path("jvm").path("gc").path("timeShare").asDouble();
+        if (n > b * (1 + threshold) && n - b > 0.005) regressions.add(String.format("GC time %.2f%% -> %.2f%% of wall time", 100 * b, 100 * n));
+        return regressions;
+    }
+
+    // multipart/form-data with a fixed boundary; the sample bytes never contain it
+    private static class Multipart {
+        static final String CONTENT_TYPE = "multipart/form-data; boundary=" + BOUNDARY;
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Multipart field(String name, String value) {
+            text("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value + "\r\n");
+            return this;
+        }
+
+        Multipart file(String name, String filename, String contentType, byte[] content) {
+            text("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + name + "\"; filename=\"" + filename
+                    + "\"\r\nContent-Type: " + contentType + "\r\n\r\n");
+            out.writeBytes(content);
+            text("\r\n");
+            return this;
+        }
+
+        byte[] bytes() {
+            text("--" + BOUNDARY + "--\r\n");
+            return out.toByteArray();
+        }
+
+        private void text(String s) {
+            out.writeBytes(s.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
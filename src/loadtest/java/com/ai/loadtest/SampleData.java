@@ -0,0 +1,166 @@
+package com.ai.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+// Request bodies for a run, generated from the scenario seed so two runs send the same bytes:
+//  - SWFs of filled outlines in three sizes (small is also the puzzle fixture)
+//  - screenshots with the small SWF's outline drawn somewhere into noise
+//  - point lists like the ones the editor posts to /api/points
+// Any *.swf in samples-dir joins the upload rotation under its file name.
+class SampleData {
+
+    static final String FIXTURE_SWF = "small";
+
+    static final String SOAP_LOG_REQUEST =
+            "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:s=\"http://ai.com/soap\">"
+            + "<soapenv:Header/><soapenv:Body><s:GetLogRequest/></soapenv:Body></soapenv:Envelope>";
+
+    final Map<String, byte[]> swfs = new LinkedHashMap<>();
+    final List<byte[]> screenshots = new ArrayList<>();
+    final List<byte[]> pointLists = new ArrayList<>();
+
+    private List<double[]> fixtureOutline;
+
+    static SampleData generate(Properties config, long seed) throws IOException {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        SampleData samples = new SampleData();
+
+        // swf(rnd, shapes, vertices per shape, stars or curved blobs)
+        samples.swfs.put(FIXTURE_SWF, samples.swf(rnd, 1, 10, true));
+        samples.swfs.put("medium", samples.swf(rnd, 24, 16, false));
+        samples.swfs.put("large", samples.swf(rnd, 600, 48, false));
+
+        String dir = config.getProperty("samples-dir");
+        if (dir != null) {
+            try (Stream<Path> files = Files.list(Paths.get(dir))) {
+                for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                    String name = file.getFileName().toString();
+                    if (name.toLowerCase().endsWith(".swf")) {
+                        samples.swfs.put(name.substring(0, name.length() - 4), Files.readAllBytes(file));
+                    }
+                }
+            }
+        }
+
+        int screenshots = Integer.parseInt(config.getProperty("screenshots", "8"));
+        for (int i = 0; i < screenshots; i++) samples.screenshots.add(samples.screenshot(rnd));
+
+        ObjectMapper mapper = new ObjectMapper();
+        int pointLists = Integer.parseInt(config.getProperty("point-lists", "16"));
+        for (int i = 0; i < pointLists; i++) samples.pointLists.add(mapper.writeValueAsBytes(points(rnd)));
+        return samples;
+    }
+
+    private byte[] swf(SplittableRandom rnd, int shapes, int vertices, boolean star) {
+        int width = 800, height = 600;
+        SwfWriter writer = new SwfWriter(width, height);
+        for (int i = 0; i < shapes; i++) {
+            double r = 20 + rnd.nextDouble(60);
+            double cx = r + rnd.nextDouble(width - 2 * r);
+            double cy = r + rnd.nextDouble(height - 2 * r);
+            List<double[]> outline = star ? star(rnd, cx, cy, r, vertices) : blob(rnd, cx, cy, r, vertices);
+            if (fixtureOutline == null) fixtureOutline = outline;
+            writer.addShape(outline, rnd.nextInt(0x1000000));
+        }
+        return writer.toBytes();
+    }
+
+    // Straight edges, alternating outer and inner radius
+    private static List<double[]> star(SplittableRandom rnd, double cx, double cy, double r, int vertices) {
+        List<double[]> outline = new ArrayList<>();
+        double inner = r * (0.35 + rnd.nextDouble(0.3));
+        for (int i = 0; i <= vertices; i++) {
+            double a = 2 * Math.PI * i / vertices;
+            double radius = i % 2 == 0 ? r : inner;
+            outline.add(new double[] {cx + radius * Math.cos(a), cy + radius * Math.sin(a)});
+        }
+        return outline;
+    }
+
+    // Quadratic curves through a wobbly circle
+    private static List<double[]> blob(SplittableRandom rnd, double cx, double cy, double r, int vertices) {
+        double[] radii = new double[vertices];
+        for (int i = 0; i < vertices; i++) radii[i] = r * (0.7 + rnd.nextDouble(0.3));
+        List<double[]> outline = new ArrayList<>();
+        outline.add(new double[] {cx + radii[0], cy});
+        for (int i = 1; i <= vertices; i++) {
+            double a = 2 * Math.PI * i / vertices;
+            double mid = 2 * Math.PI * (i - 0.5) / vertices;
+            double control = (radii[i - 1] + radii[i % vertices]) / 2 / Math.cos(Math.PI / vertices);
+            double radius = radii[i % vertices];
+            outline.add(new double[] {
+                    cx + control * Math.cos(mid), cy + control * Math.sin(mid),
+                    cx + radius * Math.cos(a), cy + radius * Math.sin(a)});
+        }
+        return outline;
+    }
+
+    private byte[] screenshot(SplittableRandom rnd) throws IOException {
+        BufferedImage img = new BufferedImage(480, 360, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                int v = 96 + rnd.nextInt(64);
+                img.setRGB(x, y, (v << 16) | (v << 8) | v);
+            }
+        }
+
+        Path2D.Double path = new Path2D.Double();
+        double[] start = fixtureOutline.get(0);
+        path.moveTo(start[0], start[1]);
+        for (int i = 1; i < fixtureOutline.size(); i++) {
+            double[] p = fixtureOutline.get(i);
+            if (p.length == 2) path.lineTo(p[0], p[1]);
+            else path.quadTo(p[0], p[1], p[2], p[3]);
+        }
+        path.closePath();
+
+        // Scaled and moved so every screenshot has to be searched
+        Rectangle bounds = path.getBounds();
+        double scale = 0.5 + rnd.nextDouble();
+        AffineTransform at = new AffineTransform();
+        at.translate(rnd.nextDouble(Math.max(1, img.getWidth() - bounds.width * scale)),
+                rnd.nextDouble(Math.max(1, img.getHeight() - bounds.height * scale)));
+        at.scale(scale, scale);
+        at.translate(-bounds.x, -bounds.y);
+
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(new Color(rnd.nextInt(0x1000000)));
+        g.fill(at.createTransformedShape(path));
+        g.dispose();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", bos);
+        return bos.toByteArray();
+    }
+
+    // 8 to 32 points around a centre in the unit square, in order, like a drawn outline
+    private static List<Map<String, Double>> points(SplittableRandom rnd) {
+        int n = 8 + rnd.nextInt(25);
+        double cx = 0.4 + rnd.nextDouble(0.2), cy = 0.4 + rnd.nextDouble(0.2);
+        List<Map<String, Double>> points = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            double a = 2 * Math.PI * i / n;
+            double r = 0.2 + rnd.nextDouble(0.15);
+            Map<String, Double> point = new LinkedHashMap<>();
+            point.put("x", cx + r * Math.cos(a));
+            point.put("y", cy + r * Math.sin(a));
+            points.add(point);
+        }
+        return points;
+    }
+}
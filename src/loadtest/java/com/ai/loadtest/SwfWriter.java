@@ -0,0 +1,212 @@
+package com.ai.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Just enough of the SWF format to write an uncompressed one-frame movie of filled outlines:
+// one DefineShape per outline, each placed once. Coordinates are pixels, stored as twips.
+// An outline is a list of points: the first {x, y} is the move-to, after that {x, y} is a line
+// and {cx, cy, x, y} a quadratic curve, the same shape the upload API returns.
+class SwfWriter {
+
+    private static final int TWIPS = 20;
+
+    private final int width;
+    private final int height;
+    private final List<byte[]> shapeTags = new ArrayList<>();
+
+    SwfWriter(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    // Returns the character id of the new shape
+    int addShape(List<double[]> outline, int rgb) {
+        int id = shapeTags.size() + 1;
+        Bits body = new Bits();
+        body.u16(id);
+
+        long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+        for (double[] p : outline) {
+            for (int i = 0; i < p.length; i += 2) {
+                minX = Math.min(minX, twips(p[i]));
+                maxX = Math.max(maxX, twips(p[i]));
+                minY = Math.min(minY, twips(p[i + 1]));
+                maxY = Math.max(maxY, twips(p[i + 1]));
+            }
+        }
+        body.rect(minX, maxX, minY, maxY);
+
+        body.u8(1);                 // one fill style
+        body.u8(0x00);              // solid
+        body.u8((rgb >> 16) & 0xFF);
+        body.u8((rgb >> 8) & 0xFF);
+        body.u8(rgb & 0xFF);
+        body.u8(0);                 // no line styles
+        body.ub(4, 1);              // fill index bits
+        body.ub(4, 0);              // line index bits
+
+        // Style change: move to the first point and select fill 1
+        long penX = twips(outline.get(0)[0]), penY = twips(outline.get(0)[1]);
+        int moveBits = signedBits(penX, penY);
+        body.ub(6, 0b000101);       // non-edge, no new styles / line style / fill 0, fill 1, move-to
+        body.ub(5, moveBits);
+        body.sb(moveBits, penX);
+        body.sb(moveBits, penY);
+        body.ub(1, 1);
+
+        for (int i = 1; i < outline.size(); i++) {
+            double[] p = outline.get(i);
+            if (p.length == 2) {
+                long dx = twips(p[0]) - penX, dy = twips(p[1]) - penY;
+                int bits = edgeBits(dx, dy);
+                body.ub(2, 0b11);   // edge, straight
+                body.ub(4, bits - 2);
+                body.ub(1, 1);      // general line, both deltas follow
+                body.sb(bits, dx);
+                body.sb(bits, dy);
+                penX += dx;
+                penY += dy;
+            } else {
+                long cx = twips(p[0]), cy = twips(p[1]);
+                long cdx = cx - penX, cdy = cy - penY;
+                long adx = twips(p[2]) - cx, ady = twips(p[3]) - cy;
+                int bits = edgeBits(cdx, cdy, adx, ady);
+                body.ub(2, 0b10);   // edge, curved
+                body.ub(4, bits - 2);
+                body.sb(bits, cdx);
+                body.sb(bits, cdy);
+                body.sb(bits, adx);
+                body.sb(bits, ady);
+                penX = cx + adx;
+                penY = cy + ady;
+            }
+        }
+        body.ub(6, 0);              // end of shape
+        shapeTags.add(body.bytes());
+        return id;
+    }
+
+    byte[] toBytes() {
+        ByteArrayOutputStream tags = new ByteArrayOutputStream();
+        Bits attributes = new Bits();
+        attributes.u32(0);
+        tag(tags, 69, attributes.bytes());              // FileAttributes, required from SWF 8 on
+        tag(tags, 9, new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF}); // SetBackgroundColor
+        for (byte[] shape : shapeTags) tag(tags, 2, shape); // DefineShape
+        for (int id = 1; id <= shapeTags.size(); id++) {
+            Bits place = new Bits();
+            place.u8(0x02);                             // PlaceObject2 with a character
+            place.u16(id);                              // depth
+            place.u16(id);
+            tag(tags, 26, place.bytes());
+        }
+        tag(tags, 1, new byte[0]);                      // ShowFrame
+        tag(tags, 0, new byte[0]);                      // End
+
+        Bits header = new Bits();
+        header.rect(0, (long) width * TWIPS, 0, (long) height * TWIPS);
+        header.u16(24 << 8);                            // 24 fps, 8.8 fixed point
+        header.u16(1);
+        byte[] frame = header.bytes();
+
+        Bits movie = new Bits();
+        movie.u8('F');
+        movie.u8('W');
+        movie.u8('S');
+        movie.u8(10);
+        movie.u32(8 + frame.length + tags.size());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(movie.bytes());
+        out.writeBytes(frame);
+        out.writeBytes(tags.toByteArray());
+        return out.toByteArray();
+    }
+
+    private static void tag(ByteArrayOutputStream out, int code, byte[] body) {
+        Bits header = new Bits();
+        if (body.length < 0x3F) {
+            header.u16((code << 6) | body.length);
+        } else {
+            header.u16((code << 6) | 0x3F);
+            header.u32(body.length);
+        }
+        out.writeBytes(header.bytes());
+        out.writeBytes(body);
+    }
+
+    private static long twips(double pixels) {
+        return Math.round(pixels * TWIPS);
+    }
+
+    // Edge deltas store their width minus 2 in four bits
+    private static int edgeBits(long... values) {
+        int bits = Math.max(2, signedBits(values));
+        if (bits > 17) throw new IllegalArgumentException("Edge longer than 3276 px");
+        return bits;
+    }
+
+    private static int signedBits(long... values) {
+        int bits = 1;
+        for (long v : values) bits = Math.max(bits, 65 - Long.numberOfLeadingZeros(v < 0 ? ~v : v));
+        return bits;
+    }
+
+    // MSB-first bit writer; the byte-sized fields are little-endian and byte-aligned
+    private static class Bits {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int current;
+        private int used;
+
+        void ub(int bits, long value) {
+            for (int i = bits - 1; i >= 0; i--) {
+                current = (current << 1) | (int) ((value >>> i) & 1);
+                if (++used == 8) {
+                    out.write(current);
+                    current = 0;
+                    used = 0;
+                }
+            }
+        }
+
+        // Two's complement, so the low `bits` bits of a negative value are what's wanted
+        void sb(int bits, long value) {
+            ub(bits, value);
+        }
+
+        void rect(long minX, long maxX, long minY, long maxY) {
+            int bits = signedBits(minX, maxX, minY, maxY);
+            ub(5, bits);
+            sb(bits, minX);
+            sb(bits, maxX);
+            sb(bits, minY);
+            sb(bits, maxY);
+            align();
+        }
+
+        void u8(int v) {
+            align();
+            out.write(v);
+        }
+
+        void u16(int v) {
+            u8(v & 0xFF);
+            u8((v >>> 8) & 0xFF);
+        }
+
+        void u32(long v) {
+            u16((int) (v & 0xFFFF));
+            u16((int) ((v >>> 16) & 0xFFFF));
+        }
+
+        void align() {
+            if (used > 0) ub(8 - used, 0);
+        }
+
+        byte[] bytes() {
+            align();
+            return out.toByteArray();
+        }
+    }
+}
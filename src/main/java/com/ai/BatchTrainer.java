@@ -0,0 +1,173 @@
+package com.ai;
+
+import com.ai.core.GenAnn;
+import com.ai.core.LayerProfile;
+import com.ai.core.TensorDataset;
+import com.ai.service.ImageService;
+import com.ai.service.ShapeTraining;
+import com.ai.service.SnapshotWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.awt.geom.Point2D;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Headless arc / custom-shape training for batch jobs. No Spring context at all, so no Tomcat,
+// H2/JPA or Spring-WS start up. Reads a properties file, writes the PNGs, GIFs, snapshots and the
+// final model to output-dir and prints a JSON summary (or writes it to `summary`).
+//
+//   java -Dloader.main=com.ai.BatchTrainer -cp app.jar org.springframework.boot.loader.launch.PropertiesLauncher job.properties
+//
+// Keys (all optional):
+//   mode=arc|custom          seed=<long>                      points=0.2,0.2 0.2,0.8 0.8,0.8   (custom)
+//   hidden=64                learning-rate=3.0                epochs=1000
+//   snapshot-every=10        output-dir=batch-output          gifs=true
+//   summary=<file>           (default: stdout)
+// With -Dgenann.profile=true the summary also gets per-layer timings (see LayerProfile).
+public class BatchTrainer {
+
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        Properties config = new Properties();
+        int exitCode = 0;
+        try {
+            if (args.length > 0) {
+                try (Reader reader = Files.newBufferedReader(Paths.get(args[0]))) {
+                    config.load(reader);
+                }
+            }
+            run(config, summary);
+            summary.put("status", "completed");
+        } catch (Exception e) {
+            e.printStackTrace();
+            summary.put("status", "failed");
+            summary.put("error", String.valueOf(e.getMessage()));
+            exitCode = 1;
+        }
+        summary.put("totalMs", (System.nanoTime() - start) / 1_000_000);
+
+        try {
+            String json = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(summary);
+            String summaryFile = config.getProperty("summary");
+            if (summaryFile != null) {
+                Files.writeString(Paths.get(summaryFile), json);
+            } else {
+                System.out.println(json);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            exitCode = 1;
+        }
+        System.exit(exitCode);
+    }
+
+    static void run(Properties config, Map<String, Object> summary) throws Exception {
+        boolean custom = "custom".equals(config.getProperty("mode", "arc"));
+        long seed = config.containsKey("seed") ? Long.parseLong(config.getProperty("seed")) : new SplittableRandom().nextLong();
+        int[] hidden = Arrays.stream(config.getProperty("hidden", "64").split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+        double learningRate = Double.parseDouble(config.getProperty("learning-rate", "3.0"));
+        int lastEpoch = Integer.parseInt(config.getProperty("epochs", "1000"));
+        int snapshotEvery = Integer.parseInt(config.getProperty("snapshot-every", "10"));
+        boolean gifs = Boolean.parseBoolean(config.getProperty("gifs", "true"));
+        Path outDir = Paths.get(config.getProperty("output-dir", "batch-output"));
+        Files.createDirectories(outDir);
+
+        summary.put("mode", custom ? "custom" : "arc");
+        summary.put("seed", seed);
+        summary.put("outputDir", outDir.toAbsolutePath().toString());
+
+        // Same seed streams as NeuralNetService.startTraining, so a batch run matches the web one
+        SplittableRandom seeds = new SplittableRandom(seed);
+        long dataSeed = seeds.nextLong();
+        long initSeed = seeds.nextLong();
+        long shuffleSeed = seeds.nextLong();
+
+        long t = System.nanoTime();
+        ShapeTraining job = new ShapeTraining(new ImageService());
+        ShapeTraining.ArtifactSink toDisk = (name, bytes) -> Files.write(outDir.resolve(name), bytes);
+        if (custom) {
+            job.generateShape(parsePoints(config.getProperty("points", "0.2,0.2 0.2,0.8 0.8,0.8 0.8,0.2")), toDisk);
+        } else {
+            job.generateArcs(dataSeed, toDisk);
+        }
+        TensorDataset dataset = job.toDataset();
+        summary.put("samples", dataset.size());
+        summary.put("generateMs", (System.nanoTime() - t) / 1_000_000);
+
+        int[] layerSizes = new int[hidden.length + 2];
+        layerSizes[0] = dataset.inputSize();
+        System.arraycopy(hidden, 0, layerSizes, 1, hidden.length);
+        layerSizes[layerSizes.length - 1] = dataset.targetSize();
+        GenAnn net = new GenAnn(layerSizes, initSeed);
+        LayerProfile profile = GenAnn.PROFILING ? new LayerProfile(layerSizes) : null;
+        net.setProfiler(profile);
+        summary.put("layers", layerSizes);
+        summary.put("epochs", lastEpoch);
+        summary.put("learningRate", learningRate);
+
+        t = System.nanoTime();
+        ExecutorService io = Executors.newFixedThreadPool(2);
+        Map<Integer, GenAnn> gifSnapshots;
+        int[] snapshotCount = {0};
+        try {
+            SnapshotWriter snapshots = new SnapshotWriter(io::execute, 2);
+            gifSnapshots = ShapeTraining.train(net, dataset, lastEpoch, learningRate, shuffleSeed, (epoch, n) -> {
+                if (snapshotEvery > 0 && epoch % snapshotEvery == 0) {
+                    snapshots.snapshot(n, outDir.resolve("swfbrain_epoch_" + epoch + ".ser").toString());
+                    snapshotCount[0]++;
+                }
+            });
+            snapshots.flush();
+        } finally {
+            io.shutdown();
+        }
+        summary.put("trainMs", (System.nanoTime() - t) / 1_000_000);
+        if (profile != null) {
+            net.setProfiler(null);
+            summary.put("profile", profile.rows());
+            System.err.print(profile.report());
+        }
+        summary.put("snapshots", snapshotCount[0]);
+        summary.put("trainingMse", mse(net, dataset));
+
+        Path modelFile = outDir.resolve("model.ser");
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(modelFile)))) {
+            oos.writeObject(net);
+        }
+        summary.put("model", modelFile.toAbsolutePath().toString());
+
+        if (gifs) {
+            t = System.nanoTime();
+            job.exportGifs(custom, dataset, gifSnapshots, toDisk);
+            summary.put("gifMs", (System.nanoTime() - t) / 1_000_000);
+        }
+    }
+
+    // "x,y x,y ..." in normalized 0..1 coordinates
+    private static Point2D.Double[] parsePoints(String spec) {
+        String[] pairs = spec.trim().split("\\s+");
+        Point2D.Double[] points = new Point2D.Double[pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            String[] xy = pairs[i].split(",");
+            points[i] = new Point2D.Double(Double.parseDouble(xy[0]), Double.parseDouble(xy[1]));
+        }
+        return points;
+    }
+
+    private static double mse(GenAnn net, TensorDataset dataset) {
+        double[] in = new double[dataset.inputSize()];
+        double[] target = new double[dataset.targetSize()];
+        double sum = 0;
+        for (int i = 0; i < dataset.size(); i++) {
+            dataset.copyInput(i, in);
+            dataset.copyTarget(i, target);
+            double[] out = net.run(in);
+            for (int j = 0; j < out.length; j++) sum += (out[j] - target[j]) * (out[j] - target[j]);
+        }
+        return sum / ((double) dataset.size() * dataset.targetSize());
+    }
+}
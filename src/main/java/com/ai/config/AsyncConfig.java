@@ -0,0 +1,68 @@
+package com.ai.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+// Separate executors instead of Spring's single default @Async executor:
+//  - trainingExecutor: fixed platform threads, one per core, for GenAnn training and rendering
+//  - ioExecutor: file writes, DB log writes, GIF export. Virtual threads on JDK 21+,
+//    a bounded platform pool otherwise.
+//  - coordinatorExecutor: one thread per long-running coordinator (sweeps, parameter servers),
+//    which mostly wait for the whole job and would otherwise hold an ioExecutor slot.
+@Configuration
+public class AsyncConfig {
+
+    @Value("${executors.training.threads:0}") // 0 = one per core
+    private int trainingThreads;
+
+    @Value("${executors.training.queue-capacity:16}")
+    private int trainingQueueCapacity;
+
+    @Value("${executors.io.max-concurrency:64}")
+    private int ioMaxConcurrency;
+
+    @Value("${executors.io.queue-capacity:256}")
+    private int ioQueueCapacity;
+
+    @Bean(name = "trainingExecutor")
+    public ThreadPoolTaskExecutor trainingExecutor() {
+        int threads = trainingThreads > 0 ? trainingThreads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(trainingQueueCapacity); // Full queue -> TaskRejectedException
+        executor.setThreadNamePrefix("train-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "coordinatorExecutor")
+    public TaskExecutor coordinatorExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("coord-");
+        executor.setVirtualThreads(Runtime.version().feature() >= 21);
+        return executor;
+    }
+
+    @Bean(name = "ioExecutor")
+    public TaskExecutor ioExecutor() {
+        if (Runtime.version().feature() >= 21) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("io-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(ioMaxConcurrency); // Callers block once the limit is reached
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(ioMaxConcurrency);
+        executor.setMaxPoolSize(ioMaxConcurrency);
+        executor.setQueueCapacity(ioQueueCapacity);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix("io-");
+        executor.initialize();
+        return executor;
+    }
+}
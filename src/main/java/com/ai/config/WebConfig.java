@@ -3,7 +3,6 @@ package com.ai.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
@@ -14,15 +13,8 @@ public class WebConfig implements WebMvcConfigurer {
     @Value("${cors.allowed.origins:http://localhost:8080}")
     private String allowedOrigins;    
     
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // Maps the URL path "/images/**" to the physical "Output" folder
-        registry.addResourceHandler("/images/**")
-                .addResourceLocations("file:Output/");
-
-        registry.addResourceHandler("/custom/**")
-                .addResourceLocations("file:Some/");
-    }
+    // "/images/**" (Output/) and "/custom/**" (Some/) are served by ArtifactController from the
+    // in-memory ArtifactStore, with those folders as the spill tier
 
     @Override
     public void addCorsMappings(CorsRegistry registry) {
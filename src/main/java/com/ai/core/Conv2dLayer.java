@@ -0,0 +1,135 @@
+package com.ai.core;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Valid (no padding), stride 1 convolution with ReLU. Direct loops, no im2col.
+public class Conv2dLayer implements FrontLayer {
+    private static final long serialVersionUID = 1L;
+
+    private final int inChannels, inHeight, inWidth;
+    private final int filters, kernel;
+    private final double[] weights; // [filter][inChannel][ky][kx]
+    private final double[] biases;  // [filter]
+
+    private transient double[] input;       // Last forward input (not copied)
+    private transient double[] output;
+    private transient double[] inputDelta;
+    private transient double[] gatedDelta;
+
+    public Conv2dLayer(int inChannels, int inHeight, int inWidth, int filters, int kernel) {
+        this(inChannels, inHeight, inWidth, filters, kernel, ThreadLocalRandom.current().nextLong());
+    }
+
+    public Conv2dLayer(int inChannels, int inHeight, int inWidth, int filters, int kernel, long seed) {
+        this.inChannels = inChannels;
+        this.inHeight = inHeight;
+        this.inWidth = inWidth;
+        this.filters = filters;
+        this.kernel = kernel;
+        this.weights = new double[filters * inChannels * kernel * kernel];
+        this.biases = new double[filters];
+
+        // Uniform He-style init, small enough for the sigmoid layers behind us
+        double range = Math.sqrt(6.0 / (inChannels * kernel * kernel));
+        SplittableRandom rand = new SplittableRandom(seed);
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = (rand.nextDouble() * 2 - 1) * range;
+        }
+        initScratch();
+    }
+
+    public void initScratch() {
+        output = new double[outputSize()];
+        inputDelta = new double[inChannels * inHeight * inWidth];
+        gatedDelta = new double[outputSize()];
+    }
+
+    public Object readResolve() {
+        initScratch();
+        return this;
+    }
+
+    public int outChannels() { return filters; }
+    public int outHeight() { return inHeight - kernel + 1; }
+    public int outWidth() { return inWidth - kernel + 1; }
+    public int parameterCount() { return weights.length + biases.length; }
+
+    // Loops run weight by weight with x innermost, so every inner loop is a long
+    // contiguous row (the JIT vectorizes these) rather than a 3-wide kernel window.
+    public double[] forward(double[] in) {
+        this.input = in;
+        int outH = outHeight(), outW = outWidth();
+        int plane = outH * outW;
+
+        for (int f = 0; f < filters; ++f) {
+            int oBase = f * plane;
+            Arrays.fill(output, oBase, oBase + plane, biases[f]);
+            int w = f * inChannels * kernel * kernel;
+            for (int c = 0; c < inChannels; ++c) {
+                int cBase = c * inHeight * inWidth;
+                for (int ky = 0; ky < kernel; ++ky) {
+                    for (int kx = 0; kx < kernel; ++kx, ++w) {
+                        double wv = weights[w];
+                        for (int y = 0; y < outH; ++y) {
+                            int o = oBase + y * outW;
+                            int i = cBase + (y + ky) * inWidth + kx;
+                            for (int x = 0; x < outW; ++x) {
+                                output[o + x] += wv * in[i + x];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int o = 0; o < output.length; ++o) {
+            if (output[o] < 0) output[o] = 0; // ReLU
+        }
+        return output;
+    }
+
+    public double[] backward(double[] delta, double learningRate, boolean needInputDelta) {
+        int outH = outHeight(), outW = outWidth();
+        int plane = outH * outW;
+
+        // ReLU gate
+        for (int o = 0; o < output.length; ++o) {
+            gatedDelta[o] = output[o] > 0 ? delta[o] : 0;
+        }
+        if (needInputDelta) Arrays.fill(inputDelta, 0);
+
+        for (int f = 0; f < filters; ++f) {
+            int oBase = f * plane;
+            double biasGrad = 0;
+            for (int o = oBase; o < oBase + plane; ++o) biasGrad += gatedDelta[o];
+
+            int w = f * inChannels * kernel * kernel;
+            for (int c = 0; c < inChannels; ++c) {
+                int cBase = c * inHeight * inWidth;
+                for (int ky = 0; ky < kernel; ++ky) {
+                    for (int kx = 0; kx < kernel; ++kx, ++w) {
+                        double wv = weights[w]; // Pre-update value for the input delta
+                        double grad = 0;
+                        for (int y = 0; y < outH; ++y) {
+                            int o = oBase + y * outW;
+                            int i = cBase + (y + ky) * inWidth + kx;
+                            for (int x = 0; x < outW; ++x) {
+                                grad += gatedDelta[o + x] * input[i + x];
+                            }
+                            if (needInputDelta) {
+                                for (int x = 0; x < outW; ++x) {
+                                    inputDelta[i + x] += wv * gatedDelta[o + x];
+                                }
+                            }
+                        }
+                        weights[w] += learningRate * grad;
+                    }
+                }
+            }
+            biases[f] += learningRate * biasGrad;
+        }
+        return needInputDelta ? inputDelta : null;
+    }
+}
@@ -0,0 +1,106 @@
+package com.ai.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Conv/pool front-end feeding a dense GenAnn stack. Trained end to end: the GenAnn
+ * hands its input deltas back and each front layer backpropagates them in turn.
+ */
+public class ConvNet implements TrainableModel {
+    private static final long serialVersionUID = 1L;
+
+    private final int inputs;
+    private final List<FrontLayer> front;
+    private final GenAnn dense;
+
+    private transient double[] denseInputDeltas;
+
+    public ConvNet(int inputs, List<FrontLayer> front, int[] denseHidden, int outputs) {
+        this(inputs, front, denseHidden, outputs, ThreadLocalRandom.current().nextLong());
+    }
+
+    public ConvNet(int inputs, List<FrontLayer> front, int[] denseHidden, int outputs, long denseSeed) {
+        this.inputs = inputs;
+        this.front = new ArrayList<>(front);
+
+        int[] sizes = new int[denseHidden.length + 2];
+        sizes[0] = front.get(front.size() - 1).outputSize();
+        System.arraycopy(denseHidden, 0, sizes, 1, denseHidden.length);
+        sizes[sizes.length - 1] = outputs;
+        this.dense = new GenAnn(sizes, denseSeed);
+        initScratch();
+    }
+
+    // 32x32 grayscale: conv3x3x4 -> max2 -> conv3x3x8 -> max2 = 6x6x8 = 288 dense inputs,
+    // instead of feeding all 1024 pixels into the first dense layer
+    public static ConvNet smallImage(int side, int[] denseHidden, int outputs, long seed) {
+        SplittableRandom seeds = new SplittableRandom(seed);
+        List<FrontLayer> front = new ArrayList<>();
+        Conv2dLayer c1 = new Conv2dLayer(1, side, side, 4, 3, seeds.nextLong());
+        front.add(c1);
+        PoolLayer p1 = PoolLayer.max(c1, 2);
+        front.add(p1);
+        Conv2dLayer c2 = new Conv2dLayer(p1.outChannels(), p1.outHeight(), p1.outWidth(), 8, 3, seeds.nextLong());
+        front.add(c2);
+        front.add(PoolLayer.max(c2, 2));
+        return new ConvNet(side * side, front, denseHidden, outputs, seeds.nextLong());
+    }
+
+    private void initScratch() {
+        denseInputDeltas = new double[dense.getInputs()];
+    }
+
+    public Object readResolve() {
+        initScratch();
+        return this;
+    }
+
+    public int getInputs() { return inputs; }
+    public int getOutputs() { return dense.getOutputs(); }
+    public GenAnn getDense() { return dense; }
+
+    public int parameterCount() {
+        int count = dense.getTotalWeights();
+        for (FrontLayer layer : front) count += layer.parameterCount();
+        return count;
+    }
+
+    public long memoryBytes() {
+        return (long) parameterCount() * Double.BYTES;
+    }
+
+    private double[] forwardFront(double[] inputVector) {
+        double[] x = inputVector;
+        for (FrontLayer layer : front) {
+            x = layer.forward(x);
+        }
+        return x;
+    }
+
+    // Front layers and the dense stack's run() share scratch buffers, so every forward pass
+    // takes the lock; a published net is read by the batcher and the puzzle job at once
+    public synchronized double[] run(double[] inputVector) {
+        return dense.run(forwardFront(inputVector));
+    }
+
+    // One sample at a time under the same lock
+    public synchronized double[][] runBatch(double[][] inputVectors) {
+        double[][] ret = new double[inputVectors.length][];
+        for (int b = 0; b < inputVectors.length; b++) {
+            ret[b] = run(inputVectors[b]);
+        }
+        return ret;
+    }
+
+    public void train(double[] inputs, double[] desiredOutputs, double learningRate) {
+        dense.train(forwardFront(inputs), desiredOutputs, learningRate, denseInputDeltas);
+
+        double[] delta = denseInputDeltas;
+        for (int l = front.size() - 1; l >= 0; --l) {
+            delta = front.get(l).backward(delta, learningRate, l > 0);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.ai.core;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * An ordered subset of a dataset's rows. Shuffling and splitting only touch the index
+ * array, the samples themselves stay where they are. forEach copies each row into two
+ * buffers owned by the view, so a view must not be iterated by several threads at once.
+ */
+public class DatasetView {
+
+    public interface RowVisitor {
+        void accept(double[] input, double[] target);
+    }
+
+    private final TensorDataset data;
+    private final int[] rows;
+    private final double[] inputBuf;
+    private final double[] targetBuf;
+
+    public DatasetView(TensorDataset data, int[] rows) {
+        this.data = data;
+        this.rows = rows;
+        this.inputBuf = new double[data.inputSize()];
+        this.targetBuf = new double[data.targetSize()];
+    }
+
+    static DatasetView all(TensorDataset data) {
+        int[] rows = new int[data.size()];
+        for (int i = 0; i < rows.length; i++) rows[i] = i;
+        return new DatasetView(data, rows);
+    }
+
+    public TensorDataset getData() { return data; }
+    public int size() { return rows.length; }
+    public int inputSize() { return data.inputSize(); }
+    public int targetSize() { return data.targetSize(); }
+
+    // Row of the underlying dataset at position k of this view
+    public int rowIndex(int k) {
+        return rows[k];
+    }
+
+    public void copyInput(int k, double[] dst) {
+        data.copyInput(rows[k], dst);
+    }
+
+    public void copyTarget(int k, double[] dst) {
+        data.copyTarget(rows[k], dst);
+    }
+
+    // Same rows in the same order with its own index array and buffers, e.g. one per worker thread
+    public DatasetView copy() {
+        return new DatasetView(data, rows.clone());
+    }
+
+    // Fisher-Yates over the indices, call once per epoch
+    public void shuffle(SplittableRandom rand) {
+        for (int i = rows.length - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int tmp = rows[i];
+            rows[i] = rows[j];
+            rows[j] = tmp;
+        }
+    }
+
+    // Every count-th row starting at index, e.g. one shard per data-parallel worker
+    public DatasetView shard(int index, int count) {
+        int[] picked = new int[(rows.length - index + count - 1) / count];
+        for (int i = 0; i < picked.length; i++) picked[i] = rows[index + i * count];
+        return new DatasetView(data, picked);
+    }
+
+    // The first count rows (in the current order) and the rest, e.g. train / validation
+    public DatasetView[] split(int count) {
+        if (count < 0 || count > rows.length) throw new IllegalArgumentException("Can't take " + count + " of " + rows.length + " rows");
+        return new DatasetView[]{
+                new DatasetView(data, Arrays.copyOfRange(rows, 0, count)),
+                new DatasetView(data, Arrays.copyOfRange(rows, count, rows.length))
+        };
+    }
+
+    public DatasetView[] split(double fraction) {
+        return split((int) Math.round(rows.length * fraction));
+    }
+
+    // Visits every row in the current order. The arrays are reused between rows.
+    public void forEach(RowVisitor visitor) {
+        for (int row : rows) {
+            data.copyInput(row, inputBuf);
+            data.copyTarget(row, targetBuf);
+            visitor.accept(inputBuf, targetBuf);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.ai.core;
+
+import java.io.Serializable;
+
+// A spatial layer that sits in front of the dense GenAnn stack in a ConvNet.
+// Data is channel-major: [channel][y][x] flattened. Buffers are owned by the layer
+// and reused between calls, so forward/backward don't allocate.
+public interface FrontLayer extends Serializable {
+    int outChannels();
+    int outHeight();
+    int outWidth();
+
+    default int outputSize() {
+        return outChannels() * outHeight() * outWidth();
+    }
+
+    int parameterCount();
+
+    double[] forward(double[] input);
+
+    // delta follows GenAnn's convention (target - output direction, scaled by the activation
+    // derivative upstream). Updates parameters and returns the delta for this layer's input,
+    // or null when needInputDelta is false (first layer).
+    double[] backward(double[] delta, double learningRate, boolean needInputDelta);
+
+    // Allocate transient buffers, after construction and after deserialization
+    void initScratch();
+}
@@ -1,44 +1,154 @@
 package com.ai.core;
 
-import java.io.Serializable;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * Direct port of genann.c to Java.
+ * Direct port of genann.c to Java, generalized from one hidden width to a list of
+ * layer sizes (e.g. 1024 -> 256 -> 32 -> 10).
  */
-public class GenAnn implements Serializable {
+public class GenAnn implements TrainableModel {
+    // Pinned to the original class so .ser files survive method additions
+    private static final long serialVersionUID = -1859512033153488644L;
+
+    // Inputs with at most this fraction of non-zero values take the sparse first-layer path
+    public static final double DEFAULT_SPARSE_THRESHOLD = 0.35;
+
+    // -Dgenann.profile=true at startup. A static final the JIT folds, so with it off every
+    // profiler hook below is dead code and compiled away.
+    public static final boolean PROFILING = Boolean.getBoolean("genann.profile");
+
     private final int inputs;
     private final int hiddenLayers;
-    private final int hidden;
+    private final int hidden; // Width of the first hidden layer, kept for old snapshots
     private final int outputs;
     private final double[] weights;
     private final int totalWeights;
+
+    // inputs, hidden..., outputs. Null in snapshots written before per-layer widths.
+    private int[] layerSizes;
     
     // Transients for runtime calculations (scratch memory)
     private transient double[] outputNeurons; 
     private transient double[] deltas;
 
-    private static final Random rand = new Random();
+    // Where each layer starts in outputNeurons/deltas, and where the weights feeding it start
+    private transient int[] neuronOffsets;
+    private transient int[] weightOffsets;
+
+    // Non-zero input indices of the current sample, activeCount == -1 means use the dense loops
+    private transient int[] activeInputs;
+    private transient int activeCount;
+    private transient double sparseThreshold;
+
+    private transient LayerProfiler profiler;
 
+    // Unseeded constructors draw a seed from ThreadLocalRandom, so building many
+    // networks in parallel never contends on a shared Random
     public GenAnn(int inputs, int hiddenLayers, int hidden, int outputs) {
-        this.inputs = inputs;
-        this.hiddenLayers = hiddenLayers;
-        this.hidden = hidden;
-        this.outputs = outputs;
-
-        int hiddenWeights = hiddenLayers > 0 ? (inputs + 1) * hidden + (hiddenLayers - 1) * (hidden + 1) * hidden : 0;
-        int outputWeights = (hiddenLayers > 0 ? (hidden + 1) : (inputs + 1)) * outputs;
-        this.totalWeights = hiddenWeights + outputWeights;
+        this(uniformLayers(inputs, hiddenLayers, hidden, outputs));
+    }
+
+    public GenAnn(int inputs, int hiddenLayers, int hidden, int outputs, long seed) {
+        this(uniformLayers(inputs, hiddenLayers, hidden, outputs), seed);
+    }
+
+    public GenAnn(int[] layerSizes) {
+        this(layerSizes, ThreadLocalRandom.current().nextLong());
+    }
+
+    // Same sizes + same seed = bit-identical initial weights
+    public GenAnn(int[] layerSizes, long seed) {
+        if (layerSizes.length < 2) throw new IllegalArgumentException("Need at least an input and an output layer");
+        this.layerSizes = layerSizes.clone();
+        this.inputs = layerSizes[0];
+        this.hiddenLayers = layerSizes.length - 2;
+        this.hidden = hiddenLayers > 0 ? layerSizes[1] : 0;
+        this.outputs = layerSizes[layerSizes.length - 1];
+
+        int total = 0;
+        for (int l = 1; l < layerSizes.length; ++l) {
+            total += (layerSizes[l - 1] + 1) * layerSizes[l]; // +1 for the bias
+        }
+        this.totalWeights = total;
         
         this.weights = new double[totalWeights];
-        randomize();
+        initScratch();
+        randomize(seed);
+    }
+
+    // GenAnn.withLayers(1024, 256, 32, 10)
+    public static GenAnn withLayers(int... layerSizes) {
+        return new GenAnn(layerSizes);
+    }
+
+    private static int[] uniformLayers(int inputs, int hiddenLayers, int hidden, int outputs) {
+        int[] sizes = new int[hiddenLayers + 2];
+        sizes[0] = inputs;
+        for (int h = 1; h <= hiddenLayers; ++h) sizes[h] = hidden;
+        sizes[hiddenLayers + 1] = outputs;
+        return sizes;
+    }
+
+    // Same topology around an existing weight array (not copied, not randomized)
+    private GenAnn(GenAnn topology, double[] weights) {
+        this.inputs = topology.inputs;
+        this.hiddenLayers = topology.hiddenLayers;
+        this.hidden = topology.hidden;
+        this.outputs = topology.outputs;
+        this.layerSizes = topology.layerSizes;
+        this.totalWeights = topology.totalWeights;
+        this.weights = weights;
         initScratch();
     }
 
     private void initScratch() {
-        int totalNeurons = inputs + hidden * hiddenLayers + outputs;
+        if (layerSizes == null) {
+            layerSizes = uniformLayers(inputs, hiddenLayers, hidden, outputs);
+        }
+
+        neuronOffsets = new int[layerSizes.length];
+        weightOffsets = new int[layerSizes.length];
+        int totalNeurons = layerSizes[0];
+        for (int l = 1; l < layerSizes.length; ++l) {
+            neuronOffsets[l] = totalNeurons;
+            totalNeurons += layerSizes[l];
+            if (l + 1 < layerSizes.length) {
+                weightOffsets[l + 1] = weightOffsets[l] + (layerSizes[l - 1] + 1) * layerSizes[l];
+            }
+        }
+
         this.outputNeurons = new double[totalNeurons];
         this.deltas = new double[totalNeurons];
+        this.activeInputs = new int[inputs];
+        this.activeCount = -1;
+        this.sparseThreshold = DEFAULT_SPARSE_THRESHOLD;
+    }
+
+    // Only takes effect when PROFILING is on, null detaches
+    public void setProfiler(LayerProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    // 0 disables the sparse path
+    public void setSparseThreshold(double sparseThreshold) {
+        this.sparseThreshold = sparseThreshold;
+    }
+
+    // Line drawings are mostly 0 after inversion, so the first layer only needs the
+    // weights of the lit pixels. Gives up as soon as the sample is too dense to pay off.
+    private void indexActiveInputs(double[] inputVector) {
+        activeCount = -1;
+        int limit = (int) (inputs * sparseThreshold);
+        int n = 0;
+        for (int k = 0; k < inputs; ++k) {
+            if (inputVector[k] != 0.0) {
+                if (n >= limit) return;
+                activeInputs[n++] = k;
+            }
+        }
+        activeCount = n;
     }
     
     // Restore scratch memory after deserialization
@@ -47,13 +157,65 @@ public class GenAnn implements Serializable {
         return this;
     }
 
+    public int getInputs() { return inputs; }
+    public int getOutputs() { return outputs; }
+    public int getHiddenLayers() { return hiddenLayers; }
+    public int[] getLayerSizes() { return layerSizes.clone(); }
+    public int getTotalWeights() { return totalWeights; }
+
+    public long memoryBytes() {
+        return (long) totalWeights * Double.BYTES;
+    }
+
+    public void copyWeightsTo(double[] dest) {
+        System.arraycopy(weights, 0, dest, 0, totalWeights);
+    }
+
+    // Overwrites this network's weights in place, e.g. with averaged weights from other workers
+    public void setWeights(double[] src) {
+        if (src.length != totalWeights) throw new IllegalArgumentException("Expected " + totalWeights + " weights, got " + src.length);
+        System.arraycopy(src, 0, weights, 0, totalWeights);
+    }
+
+    // Wraps a buffer filled by copyWeightsTo, e.g. to serialize a snapshot on another thread
+    public GenAnn withWeights(double[] weights) {
+        if (weights.length != totalWeights) throw new IllegalArgumentException("Expected " + totalWeights + " weights, got " + weights.length);
+        return new GenAnn(this, weights);
+    }
+
+    // Same hidden layers with a different output count. Hidden weights are copied, output
+    // neurons that exist in both keep their rows and the added ones start from the seed.
+    public GenAnn withOutputs(int newOutputs, long seed) {
+        int last = layerSizes.length - 1;
+        int[] sizes = layerSizes.clone();
+        sizes[last] = newOutputs;
+        GenAnn resized = new GenAnn(sizes, seed);
+
+        int outputStart = weightOffsets[last];
+        System.arraycopy(weights, 0, resized.weights, 0, outputStart);
+        int kept = Math.min(outputs, newOutputs) * (layerSizes[last - 1] + 1);
+        System.arraycopy(weights, outputStart, resized.weights, outputStart, kept);
+        return resized;
+    }
+
     public void randomize() {
-        for (int i = 0; i < totalWeights; i++) {
-            weights[i] = rand.nextDouble() - 0.5;
+        randomize(ThreadLocalRandom.current().nextLong());
+    }
+
+    // Each layer gets its own split of the seed, so a layer's weights don't depend on
+    // how many values the layers before it consumed
+    public void randomize(long seed) {
+        SplittableRandom root = new SplittableRandom(seed);
+        for (int l = 1; l < layerSizes.length; ++l) {
+            SplittableRandom r = root.split();
+            int end = weightOffsets[l] + (layerSizes[l - 1] + 1) * layerSizes[l];
+            for (int i = weightOffsets[l]; i < end; i++) {
+                weights[i] = r.nextDouble() - 0.5;
+            }
         }
     }
 
-    private double sigmoid(double a) {
+    static double sigmoid(double a) {
         if (a < -45.0) return 0;
         if (a > 45.0) return 1;
         return 1.0 / (1 + Math.exp(-a));
@@ -62,122 +224,195 @@ public class GenAnn implements Serializable {
     public double[] run(double[] inputVector) {
         // Copy inputs to scratch output array
         System.arraycopy(inputVector, 0, outputNeurons, 0, inputs);
+        indexActiveInputs(inputVector);
 
+        // Weights are laid out layer by layer, one [bias, prev...] row per neuron
         int wIdx = 0;
-        int oIdx = inputs;
-        int iIdx = 0;
+        long t0 = PROFILING && profiler != null ? System.nanoTime() : 0;
+        for (int l = 1; l < layerSizes.length; ++l) {
+            int prevSize = layerSizes[l - 1];
+            int iIdx = neuronOffsets[l - 1];
+            int oIdx = neuronOffsets[l];
+            boolean sparse = (l == 1 && activeCount >= 0);
 
-        // Input to Hidden
-        if (hiddenLayers > 0) {
-            for (int j = 0; j < hidden; ++j) {
+            for (int j = 0; j < layerSizes[l]; ++j) {
                 double sum = weights[wIdx++] * -1.0; // Bias
-                for (int k = 0; k < inputs; ++k) {
-                    sum += weights[wIdx++] * outputNeurons[iIdx + k];
-                }
-                outputNeurons[oIdx++] = sigmoid(sum);
-            }
-            iIdx += inputs;
-
-            // Hidden to Hidden
-            for (int h = 1; h < hiddenLayers; ++h) {
-                for (int j = 0; j < hidden; ++j) {
-                    double sum = weights[wIdx++] * -1.0;
-                    for (int k = 0; k < hidden; ++k) {
+                if (sparse) {
+                    for (int a = 0; a < activeCount; ++a) {
+                        int k = activeInputs[a];
+                        sum += weights[wIdx + k] * outputNeurons[k];
+                    }
+                    wIdx += prevSize;
+                } else {
+                    for (int k = 0; k < prevSize; ++k) {
                         sum += weights[wIdx++] * outputNeurons[iIdx + k];
                     }
-                    outputNeurons[oIdx++] = sigmoid(sum);
                 }
-                iIdx += hidden;
+                outputNeurons[oIdx + j] = sigmoid(sum);
+            }
+
+            if (PROFILING && profiler != null) {
+                long t1 = System.nanoTime();
+                long used = sparse ? activeCount : prevSize;
+                long size = layerSizes[l];
+                profiler.record(l, LayerProfiler.Phase.FORWARD, t1 - t0, 2 * (used + 1) * size,
+                        ((used + 1) * size + used + size) * Double.BYTES);
+                t0 = t1;
             }
         }
 
-        // Hidden (or Input) to Output
         double[] ret = new double[outputs];
-        int retIdx = 0;
-        for (int j = 0; j < outputs; ++j) {
-            double sum = weights[wIdx++] * -1.0;
-            int prevLayerSize = (hiddenLayers > 0) ? hidden : inputs;
-            for (int k = 0; k < prevLayerSize; ++k) {
-                sum += weights[wIdx++] * outputNeurons[iIdx + k];
+        System.arraycopy(outputNeurons, neuronOffsets[layerSizes.length - 1], ret, 0, outputs);
+        return ret;
+    }
+
+    // Forward pass for several samples at once. Each weight row is read once per batch
+    // instead of once per sample, so it stays in cache while every sample uses it.
+    // Uses its own buffers instead of the scratch arrays, so it is safe to call concurrently.
+    public double[][] runBatch(double[][] inputVectors) {
+        int n = inputVectors.length;
+        double[][] current = inputVectors;
+        int wIdx = 0;
+        LayerProfiler p = PROFILING ? profiler : null; // May be swapped by another thread meanwhile
+        long t0 = p != null ? System.nanoTime() : 0;
+
+        for (int l = 1; l < layerSizes.length; ++l) {
+            int prevSize = layerSizes[l - 1];
+            int size = layerSizes[l];
+            double[][] next = new double[n][size];
+            for (int j = 0; j < size; ++j) {
+                for (int b = 0; b < n; ++b) {
+                    double[] in = current[b];
+                    double sum = weights[wIdx] * -1.0; // Bias
+                    for (int k = 0; k < prevSize; ++k) {
+                        sum += weights[wIdx + 1 + k] * in[k];
+                    }
+                    next[b][j] = sigmoid(sum);
+                }
+                wIdx += prevSize + 1;
+            }
+            current = next;
+
+            if (PROFILING && p != null) {
+                long t1 = System.nanoTime();
+                long rows = (long) (prevSize + 1) * size;
+                p.record(l, LayerProfiler.Phase.FORWARD, t1 - t0, 2 * rows * n,
+                        (rows + (long) n * (prevSize + size)) * Double.BYTES);
+                t0 = t1;
             }
-            double val = sigmoid(sum);
-            outputNeurons[oIdx++] = val;
-            ret[retIdx++] = val;
         }
-        
-        return ret;
+        return current;
     }
 
     public void train(double[] inputs, double[] desiredOutputs, double learningRate) {
+        train(inputs, desiredOutputs, learningRate, null);
+    }
+
+    // inputDeltas, if not null, receives the first layer's deltas pushed back onto the inputs
+    // (same sign convention as the deltas here), so a ConvNet front-end can keep backpropagating.
+    public void train(double[] inputs, double[] desiredOutputs, double learningRate, double[] inputDeltas) {
         run(inputs); // Forward pass
 
+        int last = layerSizes.length - 1;
+        long t0 = PROFILING && profiler != null ? System.nanoTime() : 0;
+
         // 1. Output Layer Deltas
-        int oIdx = this.inputs + this.hidden * this.hiddenLayers;
-        int dIdx = this.hidden * this.hiddenLayers; // Delta index for output
-        
+        int oIdx = neuronOffsets[last];
         for (int j = 0; j < outputs; ++j) {
             double o = outputNeurons[oIdx + j];
             double t = desiredOutputs[j];
-            deltas[dIdx + j] = (t - o) * o * (1.0 - o);
+            deltas[oIdx + j] = (t - o) * o * (1.0 - o);
+        }
+        if (PROFILING && profiler != null) {
+            long t1 = System.nanoTime();
+            profiler.record(last, LayerProfiler.Phase.OUTPUT_DELTAS, t1 - t0, 4L * outputs, 3L * outputs * Double.BYTES);
+            t0 = t1;
         }
 
         // 2. Hidden Layer Deltas
-        for (int h = hiddenLayers - 1; h >= 0; --h) {
-            int currentHiddenIdx = h * hidden; // delta index
-            int nextLayerDeltaIdx = (h + 1) * hidden; // could be hidden or output start
-            
-            // Pointer to weights connecting this layer to next
-            // (Calculated mathematically based on layer sizes)
-            int wStart = (this.inputs + 1) * this.hidden + (this.hidden + 1) * this.hidden * h;
-            
-            for (int j = 0; j < hidden; ++j) {
+        for (int l = last - 1; l >= 1; --l) {
+            int size = layerSizes[l];
+            int nextSize = layerSizes[l + 1];
+            int nIdx = neuronOffsets[l];
+            int nextIdx = neuronOffsets[l + 1];
+
+            // Weights connecting this layer to the next
+            int wStart = weightOffsets[l + 1];
+
+            for (int j = 0; j < size; ++j) {
                 double deltaSum = 0;
-                int nextLayerSize = (h == hiddenLayers - 1 ? outputs : hidden);
-                
-                for (int k = 0; k < nextLayerSize; ++k) {
-                    double forwardDelta = deltas[nextLayerDeltaIdx + k];
-                    int wIndex = wStart + (k * (hidden + 1) + (j + 1));
-                    deltaSum += forwardDelta * weights[wIndex];
+                for (int k = 0; k < nextSize; ++k) {
+                    int wIndex = wStart + k * (size + 1) + (j + 1);
+                    deltaSum += deltas[nextIdx + k] * weights[wIndex];
                 }
-                
-                double o = outputNeurons[this.inputs + currentHiddenIdx + j];
-                deltas[currentHiddenIdx + j] = o * (1.0 - o) * deltaSum;
+                double o = outputNeurons[nIdx + j];
+                deltas[nIdx + j] = o * (1.0 - o) * deltaSum;
+            }
+
+            if (PROFILING && profiler != null) {
+                long t1 = System.nanoTime();
+                long links = (long) size * nextSize;
+                profiler.record(l, LayerProfiler.Phase.HIDDEN_DELTAS, t1 - t0, 2 * links + 3L * size,
+                        (links + (long) nextSize + 2L * size) * Double.BYTES);
+                t0 = t1;
             }
         }
 
-        // 3. Update Weights
-        // Output Weights
-        int wIdx = (hiddenLayers > 0) 
-            ? ((this.inputs + 1) * this.hidden + (this.hidden + 1) * this.hidden * (this.hiddenLayers - 1)) 
-            : 0;
-        
-        int prevOutIdx = (hiddenLayers > 0) 
-            ? (this.inputs + (this.hidden) * (this.hiddenLayers - 1)) 
-            : 0;
-            
-        int outputDeltaIdx = this.hidden * this.hiddenLayers;
+        if (inputDeltas != null) {
+            // Before the update, against the weights the forward pass used
+            Arrays.fill(inputDeltas, 0, this.inputs, 0.0);
+            int nIdx = neuronOffsets[1];
+            for (int j = 0; j < layerSizes[1]; ++j) {
+                double d = deltas[nIdx + j];
+                int wRow = j * (this.inputs + 1) + 1;
+                for (int k = 0; k < this.inputs; ++k) {
+                    inputDeltas[k] += d * weights[wRow + k];
+                }
+            }
 
-        for (int j = 0; j < outputs; ++j) {
-            weights[wIdx++] += deltas[outputDeltaIdx + j] * learningRate * -1.0; // Bias update
-            int prevLayerSize = hiddenLayers > 0 ? hidden : this.inputs;
-            for (int k = 0; k < prevLayerSize; ++k) {
-                weights[wIdx++] += deltas[outputDeltaIdx + j] * learningRate * outputNeurons[prevOutIdx + k];
+            if (PROFILING && profiler != null) {
+                long t1 = System.nanoTime();
+                long links = (long) layerSizes[1] * this.inputs;
+                profiler.record(0, LayerProfiler.Phase.INPUT_DELTAS, t1 - t0, 2 * links,
+                        (links + layerSizes[1] + 2L * this.inputs) * Double.BYTES);
+                t0 = t1;
             }
         }
 
-        // Hidden Weights
-        for (int h = hiddenLayers - 1; h >= 0; --h) {
-             int dIndex = h * hidden;
-             int iIndex = h > 0 ? (this.inputs + hidden * (h - 1)) : 0;
-             int wIndex = h > 0 ? ((this.inputs + 1) * hidden + (hidden + 1) * hidden * (h - 1)) : 0;
-             
-             for (int j = 0; j < hidden; ++j) {
-                 weights[wIndex++] += deltas[dIndex + j] * learningRate * -1.0;
-                 int prevSize = (h == 0 ? this.inputs : hidden);
-                 for (int k = 0; k < prevSize; ++k) {
-                     weights[wIndex++] += deltas[dIndex + j] * learningRate * outputNeurons[iIndex + k];
-                 }
-             }
+        // 3. Update Weights, output layer first like genann
+        for (int l = last; l >= 1; --l) {
+            int prevSize = layerSizes[l - 1];
+            int iIdx = neuronOffsets[l - 1];
+            int dIdx = neuronOffsets[l];
+            int wIdx = weightOffsets[l];
+            boolean sparse = (l == 1 && activeCount >= 0);
+
+            for (int j = 0; j < layerSizes[l]; ++j) {
+                weights[wIdx++] += deltas[dIdx + j] * learningRate * -1.0; // Bias update
+                if (sparse) {
+                    // Zero inputs contribute a zero update, skip them
+                    double step = deltas[dIdx + j] * learningRate;
+                    for (int a = 0; a < activeCount; ++a) {
+                        int k = activeInputs[a];
+                        weights[wIdx + k] += step * outputNeurons[k];
+                    }
+                    wIdx += prevSize;
+                } else {
+                    for (int k = 0; k < prevSize; ++k) {
+                        weights[wIdx++] += deltas[dIdx + j] * learningRate * outputNeurons[iIdx + k];
+                    }
+                }
+            }
+
+            if (PROFILING && profiler != null) {
+                long t1 = System.nanoTime();
+                long used = sparse ? activeCount : prevSize;
+                long size = layerSizes[l];
+                // Each touched weight is read and written back
+                profiler.record(l, LayerProfiler.Phase.WEIGHT_UPDATE, t1 - t0, 3 * (used + 1) * size,
+                        (2 * (used + 1) * size + used + size) * Double.BYTES);
+                t0 = t1;
+            }
         }
     }
-}
\ No newline at end of file
+}
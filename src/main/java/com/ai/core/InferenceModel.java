@@ -0,0 +1,15 @@
+package com.ai.core;
+
+import java.io.Serializable;
+
+// What the model registry serves: full precision GenAnn or a QuantizedGenAnn
+public interface InferenceModel extends Serializable {
+    int getInputs();
+    int getOutputs();
+
+    // Must be safe to call from several threads at once
+    double[][] runBatch(double[][] inputVectors);
+
+    // Approximate resident size of the parameters
+    long memoryBytes();
+}
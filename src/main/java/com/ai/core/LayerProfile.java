@@ -0,0 +1,85 @@
+package com.ai.core;
+
+import java.util.*;
+
+/**
+ * LayerProfiler that sums everything per (layer, phase) and prints it as a table.
+ * Synchronized, since runBatch may report from several inference threads at once.
+ */
+public class LayerProfile implements LayerProfiler {
+
+    private static final int PHASES = Phase.values().length;
+
+    private final int[] layerSizes;
+    private final long[] calls;
+    private final long[] nanos;
+    private final long[] flops;
+    private final long[] bytes;
+
+    public LayerProfile(int[] layerSizes) {
+        this.layerSizes = layerSizes.clone();
+        int slots = layerSizes.length * PHASES;
+        this.calls = new long[slots];
+        this.nanos = new long[slots];
+        this.flops = new long[slots];
+        this.bytes = new long[slots];
+    }
+
+    @Override
+    public synchronized void record(int layer, Phase phase, long nanos, long flops, long bytes) {
+        int slot = layer * PHASES + phase.ordinal();
+        this.calls[slot]++;
+        this.nanos[slot] += nanos;
+        this.flops[slot] += flops;
+        this.bytes[slot] += bytes;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(calls, 0);
+        Arrays.fill(nanos, 0);
+        Arrays.fill(flops, 0);
+        Arrays.fill(bytes, 0);
+    }
+
+    // One row per (layer, phase) that ran, for JSON / the stats endpoints
+    public synchronized List<Map<String, Object>> rows() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int l = 0; l < layerSizes.length; l++) {
+            for (Phase phase : Phase.values()) {
+                int slot = l * PHASES + phase.ordinal();
+                if (calls[slot] == 0) continue;
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("layer", l);
+                // Input deltas (layer 0) flow back from the first hidden layer
+                row.put("shape", l > 0 ? layerSizes[l - 1] + "->" + layerSizes[l] : layerSizes[1] + "->" + layerSizes[0]);
+                row.put("phase", phase);
+                row.put("calls", calls[slot]);
+                row.put("nanos", nanos[slot]);
+                row.put("flops", flops[slot]);
+                row.put("bytes", bytes[slot]);
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    public synchronized String report() {
+        long total = 0;
+        for (long n : nanos) total += n;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-5s %-11s %-14s %10s %10s %8s %9s %9s%n",
+                "layer", "shape", "phase", "calls", "ms", "share", "GFLOP/s", "GB/s"));
+        for (Map<String, Object> row : rows()) {
+            long n = (Long) row.get("nanos");
+            double seconds = n / 1e9;
+            sb.append(String.format("%-5d %-11s %-14s %10d %10.2f %7.1f%% %9.2f %9.2f%n",
+                    row.get("layer"), row.get("shape"), row.get("phase"), row.get("calls"), n / 1e6,
+                    total > 0 ? 100.0 * n / total : 0.0,
+                    seconds > 0 ? (Long) row.get("flops") / seconds / 1e9 : 0.0,
+                    seconds > 0 ? (Long) row.get("bytes") / seconds / 1e9 : 0.0));
+        }
+        sb.append(String.format("total %.2f ms%n", total / 1e6));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,17 @@
+package com.ai.core;
+
+/**
+ * Receives per-layer timings from GenAnn.run / runBatch / train. Only called when the JVM was
+ * started with -Dgenann.profile=true (see GenAnn.PROFILING) and a profiler is attached to the
+ * network; otherwise the JIT drops the hooks entirely.
+ * <p>
+ * FLOPs count the multiply-adds of the weighted sums and updates, the sigmoid isn't counted.
+ * Bytes are the weights, activations and deltas the phase reads or writes, ignoring caches.
+ */
+public interface LayerProfiler {
+
+    enum Phase { FORWARD, OUTPUT_DELTAS, HIDDEN_DELTAS, INPUT_DELTAS, WEIGHT_UPDATE }
+
+    // layer is the index into GenAnn.getLayerSizes() of the layer being computed
+    void record(int layer, Phase phase, long nanos, long flops, long bytes);
+}
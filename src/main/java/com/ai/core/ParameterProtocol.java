@@ -0,0 +1,59 @@
+package com.ai.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// Binary messages between ParameterServer and ParameterWorker, big-endian as written by DataOutputStream.
+//   HELLO   worker -> server  magic, version, job token (UTF)
+//   JOB     server -> worker  layer sizes, weights, dataset path, shard index/count, learning rate,
+//                             steps per round, rounds, shuffle seed
+//   PUSH    worker -> server  round, steps trained, weight delta since the last weights it received
+//   WEIGHTS server -> worker  current averaged weights
+//   DONE    server -> worker  stop, nothing follows (also the answer to a bad HELLO)
+final class ParameterProtocol {
+
+    static final int MAGIC = 0x47414e4e; // "GANN"
+    static final int VERSION = 2;
+
+    static final int HELLO = 1;
+    static final int JOB = 2;
+    static final int PUSH = 3;
+    static final int WEIGHTS = 4;
+    static final int DONE = 5;
+
+    private ParameterProtocol() {}
+
+    static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double v : values) {
+            out.writeLong(Double.doubleToRawLongBits(v));
+        }
+    }
+
+    // Reads into dest, which must already have the right length
+    static void readDoubles(DataInputStream in, double[] dest) throws IOException {
+        int n = in.readInt();
+        if (n != dest.length) throw new IOException("Expected " + dest.length + " values, got " + n);
+        for (int i = 0; i < n; i++) {
+            dest[i] = Double.longBitsToDouble(in.readLong());
+        }
+    }
+
+    static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int v : values) out.writeInt(v);
+    }
+
+    static int[] readInts(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || n > 1024) throw new IOException("Bad int array length " + n);
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) values[i] = in.readInt();
+        return values;
+    }
+
+    static void expect(int actual, int expected) throws IOException {
+        if (actual != expected) throw new IOException("Expected message " + expected + ", got " + actual);
+    }
+}
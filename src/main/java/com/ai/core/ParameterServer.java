@@ -0,0 +1,282 @@
+package com.ai.core;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Coordinator for data-parallel GenAnn training over TCP. Workers (see ParameterWorker) each get
+ * one shard of a mapped dataset file, train K samples per round and push their weight change.
+ * <ul>
+ * <li>SYNC: the round ends once every live worker pushed, the mean change is applied and everyone
+ * continues from the same weights.</li>
+ * <li>ASYNC: each push is applied on arrival, scaled by 1/live workers, and the pusher gets the
+ * current weights straight back without waiting for the others.</li>
+ * </ul>
+ * A worker that disconnects or stays silent past the read timeout is dropped and the rest carry on
+ * without its shard.
+ * <p>
+ * Listens on loopback unless Options.bindAddress says otherwise. A connection only takes a worker
+ * slot after a HELLO with the job's token; anything else is answered with DONE and closed, so it
+ * never sees the dataset path or gets to push deltas.
+ */
+public class ParameterServer implements Closeable {
+
+    public enum Mode { SYNC, ASYNC }
+
+    public static class Options {
+        public int workers = 2;
+        public Mode mode = Mode.SYNC;
+        public int stepsPerRound = 100;
+        public int rounds = 100;
+        public double learningRate = 0.1;
+        public long seed = 0;
+        public int acceptTimeoutMs = 30_000;
+        public int readTimeoutMs = 120_000;
+        public InetAddress bindAddress = InetAddress.getLoopbackAddress();
+        public String token = "";
+    }
+
+    // How long a fresh connection gets to send its HELLO before it's closed
+    private static final int HELLO_TIMEOUT_MS = 5_000;
+
+    private final ServerSocket serverSocket;
+    private final Path datasetFile;
+    private final Options options;
+    private final double[] weights;
+    private final int[] layerSizes;
+
+    // Everything below is guarded by `this`
+    private final double[] pending;
+    private boolean[] alive;
+    private boolean[] pushed;
+    private int live;
+    private int pushedCount;
+    private int roundsApplied; // SYNC only
+    private long updates;
+    private int dropped;
+
+    public ParameterServer(int port, GenAnn initial, Path datasetFile, Options options) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, options.bindAddress);
+        this.datasetFile = datasetFile.toAbsolutePath();
+        this.options = options;
+        this.layerSizes = initial.getLayerSizes();
+        this.weights = new double[initial.getTotalWeights()];
+        this.pending = new double[weights.length];
+        initial.copyWeightsTo(weights);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // Waits for the workers, trains until every worker finished or dropped out, returns the result
+    public GenAnn run() throws IOException {
+        List<Socket> sockets = acceptWorkers();
+        int n = sockets.size();
+        if (n == 0) throw new IOException("No workers connected within " + options.acceptTimeoutMs + " ms");
+        synchronized (this) {
+            alive = new boolean[n];
+            pushed = new boolean[n];
+            Arrays.fill(alive, true);
+            live = n;
+        }
+
+        SplittableRandom seeds = new SplittableRandom(options.seed);
+        List<Thread> handlers = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int id = i;
+            long shuffleSeed = seeds.nextLong();
+            Socket socket = sockets.get(i);
+            Thread t = new Thread(() -> serve(id, n, socket, shuffleSeed), "param-worker-" + i);
+            t.start();
+            handlers.add(t);
+        }
+        for (Thread t : handlers) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while training", e);
+            }
+        }
+
+        synchronized (this) {
+            System.out.println("Parameter server done: " + getStats());
+            return GenAnn.withLayers(layerSizes).withWeights(weights.clone());
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", options.mode);
+        stats.put("liveWorkers", live);
+        stats.put("droppedWorkers", dropped);
+        stats.put("roundsApplied", roundsApplied);
+        stats.put("updates", updates);
+        return stats;
+    }
+
+    private List<Socket> acceptWorkers() throws IOException {
+        List<Socket> sockets = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + options.acceptTimeoutMs;
+        while (sockets.size() < options.workers) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) break;
+            serverSocket.setSoTimeout((int) left);
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketTimeoutException e) {
+                break;
+            }
+            if (handshake(socket)) {
+                socket.setSoTimeout(options.readTimeoutMs);
+                sockets.add(socket);
+            }
+        }
+        if (sockets.size() < options.workers) {
+            System.out.println("Parameter server: only " + sockets.size() + " of " + options.workers + " workers connected, starting anyway");
+        }
+        return sockets;
+    }
+
+    // Reads the HELLO; true if the connection is a worker of this job. Rejected connections are closed.
+    private boolean handshake(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(HELLO_TIMEOUT_MS);
+            // Not closed on success, the stream wraps the socket that serve() keeps using
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            if (in.readInt() == ParameterProtocol.HELLO
+                    && in.readInt() == ParameterProtocol.MAGIC
+                    && in.readInt() == ParameterProtocol.VERSION
+                    && MessageDigest.isEqual(in.readUTF().getBytes(StandardCharsets.UTF_8), options.token.getBytes(StandardCharsets.UTF_8))) {
+                return true;
+            }
+            System.out.println("Parameter server: rejected connection from " + socket.getRemoteSocketAddress() + " (bad HELLO or token)");
+            new DataOutputStream(socket.getOutputStream()).writeInt(ParameterProtocol.DONE);
+        } catch (IOException e) {
+            System.out.println("Parameter server: no HELLO from " + socket.getRemoteSocketAddress() + ": " + e);
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        return false;
+    }
+
+    private void serve(int id, int shardCount, Socket socket, long shuffleSeed) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            out.writeInt(ParameterProtocol.JOB);
+            ParameterProtocol.writeInts(out, layerSizes);
+            synchronized (this) {
+                ParameterProtocol.writeDoubles(out, weights);
+            }
+            out.writeUTF(datasetFile.toString());
+            out.writeInt(id);
+            out.writeInt(shardCount);
+            out.writeDouble(options.learningRate);
+            out.writeInt(options.stepsPerRound);
+            out.writeInt(options.rounds);
+            out.writeLong(shuffleSeed);
+            out.flush();
+
+            double[] delta = new double[weights.length];
+            double[] reply = new double[weights.length];
+            for (int round = 0; round < options.rounds; round++) {
+                ParameterProtocol.expect(in.readInt(), ParameterProtocol.PUSH);
+                int workerRound = in.readInt();
+                in.readInt(); // steps trained, same for every worker for now
+                ParameterProtocol.readDoubles(in, delta);
+                if (workerRound != round) throw new IOException("Worker " + id + " sent round " + workerRound + ", expected " + round);
+
+                if (options.mode == Mode.SYNC) {
+                    pushSync(id, delta, round);
+                } else {
+                    pushAsync(delta);
+                }
+
+                if (round == options.rounds - 1) break;
+                synchronized (this) {
+                    System.arraycopy(weights, 0, reply, 0, weights.length);
+                }
+                out.writeInt(ParameterProtocol.WEIGHTS);
+                ParameterProtocol.writeDoubles(out, reply);
+                out.flush();
+            }
+            out.writeInt(ParameterProtocol.DONE);
+            out.flush();
+            synchronized (this) {
+                alive[id] = false;
+                live--;
+                notifyAll();
+            }
+        } catch (Exception e) {
+            System.out.println("Parameter server: dropping worker " + id + ": " + e);
+            synchronized (this) {
+                if (alive[id]) {
+                    alive[id] = false;
+                    live--;
+                    dropped++;
+                }
+                // Everyone still in the round may have been waiting on this worker
+                if (options.mode == Mode.SYNC) applyIfComplete();
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized void pushSync(int id, double[] delta, int round) throws InterruptedException {
+        for (int i = 0; i < pending.length; i++) pending[i] += delta[i];
+        pushed[id] = true;
+        pushedCount++;
+        updates++;
+        applyIfComplete();
+        while (roundsApplied <= round) {
+            wait();
+        }
+    }
+
+    // Applies the mean pending change once no live worker still owes a push for this round
+    private void applyIfComplete() {
+        if (pushedCount == 0) return;
+        for (int i = 0; i < alive.length; i++) {
+            if (alive[i] && !pushed[i]) return;
+        }
+        double scale = 1.0 / pushedCount;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] += pending[i] * scale;
+            pending[i] = 0;
+        }
+        Arrays.fill(pushed, false);
+        pushedCount = 0;
+        roundsApplied++;
+        notifyAll();
+    }
+
+    private synchronized void pushAsync(double[] delta) {
+        double scale = 1.0 / Math.max(1, live);
+        for (int i = 0; i < weights.length; i++) weights[i] += delta[i] * scale;
+        updates++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
@@ -0,0 +1,111 @@
+package com.ai.core;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/**
+ * Data-parallel worker: connects to a ParameterServer, trains a local copy of the network on its
+ * shard of a mapped dataset file, and every round sends the weight change back and continues from
+ * the averaged weights it gets in return. Runs in its own JVM:
+ * <pre>java -cp &lt;classes&gt; com.ai.core.ParameterWorker &lt;host&gt; &lt;port&gt; [token]</pre>
+ * The job token comes from the /api/puzzle/distributed response; without the argument it's read
+ * from the GENANN_DIST_TOKEN environment variable (how local workers get it).
+ */
+public class ParameterWorker {
+
+    private final String host;
+    private final int port;
+    private final String token;
+
+    public ParameterWorker(String host, int port, String token) {
+        this.host = host;
+        this.port = port;
+        this.token = token;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String token = args.length == 3 ? args[2] : System.getenv("GENANN_DIST_TOKEN");
+        if (args.length < 2 || args.length > 3 || token == null) {
+            System.err.println("Usage: ParameterWorker <host> <port> [token], or the token in GENANN_DIST_TOKEN");
+            System.exit(2);
+        }
+        new ParameterWorker(args[0], Integer.parseInt(args[1]), token).run();
+    }
+
+    public void run() throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), 10_000);
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            out.writeInt(ParameterProtocol.HELLO);
+            out.writeInt(ParameterProtocol.MAGIC);
+            out.writeInt(ParameterProtocol.VERSION);
+            out.writeUTF(token);
+            out.flush();
+
+            int type = in.readInt();
+            if (type == ParameterProtocol.DONE) {
+                System.out.println("Worker: server has no job for us (wrong token or port?)");
+                return;
+            }
+            ParameterProtocol.expect(type, ParameterProtocol.JOB);
+            int[] layerSizes = ParameterProtocol.readInts(in);
+            GenAnn net = GenAnn.withLayers(layerSizes);
+            double[] base = new double[net.getTotalWeights()];
+            ParameterProtocol.readDoubles(in, base);
+            net.setWeights(base);
+            String datasetPath = in.readUTF();
+            int shardIndex = in.readInt();
+            int shardCount = in.readInt();
+            double learningRate = in.readDouble();
+            int stepsPerRound = in.readInt();
+            int rounds = in.readInt();
+            long seed = in.readLong();
+
+            TensorDataset dataset = TensorDataset.map(Paths.get(datasetPath));
+            DatasetView shard = dataset.rows().shard(shardIndex, shardCount);
+            if (shard.size() == 0) throw new IOException("Shard " + shardIndex + "/" + shardCount + " is empty");
+            SplittableRandom shuffle = new SplittableRandom(seed);
+            shard.shuffle(shuffle);
+            System.out.println("Worker " + shardIndex + "/" + shardCount + ": " + shard.size() + " rows from " + datasetPath);
+
+            double[] input = new double[shard.inputSize()];
+            double[] target = new double[shard.targetSize()];
+            double[] delta = new double[base.length];
+            int cursor = 0;
+
+            for (int round = 0; round < rounds; round++) {
+                for (int step = 0; step < stepsPerRound; step++) {
+                    if (cursor == shard.size()) {
+                        shard.shuffle(shuffle);
+                        cursor = 0;
+                    }
+                    shard.copyInput(cursor, input);
+                    shard.copyTarget(cursor, target);
+                    net.train(input, target, learningRate);
+                    cursor++;
+                }
+
+                net.copyWeightsTo(delta);
+                for (int i = 0; i < delta.length; i++) delta[i] -= base[i];
+                out.writeInt(ParameterProtocol.PUSH);
+                out.writeInt(round);
+                out.writeInt(stepsPerRound);
+                ParameterProtocol.writeDoubles(out, delta);
+                out.flush();
+
+                type = in.readInt();
+                if (type == ParameterProtocol.DONE) break;
+                ParameterProtocol.expect(type, ParameterProtocol.WEIGHTS);
+                ParameterProtocol.readDoubles(in, base);
+                net.setWeights(base);
+            }
+            System.out.println("Worker " + shardIndex + "/" + shardCount + " finished");
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.ai.core;
+
+import java.util.Arrays;
+
+// Non-overlapping max or average pooling (window == stride). No parameters.
+public class PoolLayer implements FrontLayer {
+    private static final long serialVersionUID = 1L;
+
+    private final int channels, inHeight, inWidth;
+    private final int size;
+    private final boolean max;
+
+    private transient double[] output;
+    private transient int[] argMax; // Input index that won each max window
+    private transient double[] inputDelta;
+
+    public PoolLayer(int channels, int inHeight, int inWidth, int size, boolean max) {
+        this.channels = channels;
+        this.inHeight = inHeight;
+        this.inWidth = inWidth;
+        this.size = size;
+        this.max = max;
+        initScratch();
+    }
+
+    public static PoolLayer max(FrontLayer prev, int size) {
+        return new PoolLayer(prev.outChannels(), prev.outHeight(), prev.outWidth(), size, true);
+    }
+
+    public static PoolLayer avg(FrontLayer prev, int size) {
+        return new PoolLayer(prev.outChannels(), prev.outHeight(), prev.outWidth(), size, false);
+    }
+
+    public void initScratch() {
+        output = new double[outputSize()];
+        argMax = new int[outputSize()];
+        inputDelta = new double[channels * inHeight * inWidth];
+    }
+
+    public Object readResolve() {
+        initScratch();
+        return this;
+    }
+
+    public int outChannels() { return channels; }
+    public int outHeight() { return inHeight / size; }
+    public int outWidth() { return inWidth / size; }
+    public int parameterCount() { return 0; }
+
+    public double[] forward(double[] in) {
+        int outH = outHeight(), outW = outWidth();
+        int o = 0;
+        for (int c = 0; c < channels; ++c) {
+            int cBase = c * inHeight * inWidth;
+            for (int y = 0; y < outH; ++y) {
+                for (int x = 0; x < outW; ++x, ++o) {
+                    double best = Double.NEGATIVE_INFINITY, sum = 0;
+                    int bestIdx = -1;
+                    for (int py = 0; py < size; ++py) {
+                        int row = cBase + (y * size + py) * inWidth + x * size;
+                        for (int px = 0; px < size; ++px) {
+                            double v = in[row + px];
+                            sum += v;
+                            if (v > best) {
+                                best = v;
+                                bestIdx = row + px;
+                            }
+                        }
+                    }
+                    output[o] = max ? best : sum / (size * size);
+                    argMax[o] = bestIdx;
+                }
+            }
+        }
+        return output;
+    }
+
+    public double[] backward(double[] delta, double learningRate, boolean needInputDelta) {
+        if (!needInputDelta) return null;
+        Arrays.fill(inputDelta, 0);
+        int outH = outHeight(), outW = outWidth();
+        double share = 1.0 / (size * size);
+        int o = 0;
+        for (int c = 0; c < channels; ++c) {
+            int cBase = c * inHeight * inWidth;
+            for (int y = 0; y < outH; ++y) {
+                for (int x = 0; x < outW; ++x, ++o) {
+                    if (max) {
+                        inputDelta[argMax[o]] += delta[o];
+                        continue;
+                    }
+                    for (int py = 0; py < size; ++py) {
+                        int row = cBase + (y * size + py) * inWidth + x * size;
+                        for (int px = 0; px < size; ++px) {
+                            inputDelta[row + px] += delta[o] * share;
+                        }
+                    }
+                }
+            }
+        }
+        return inputDelta;
+    }
+}
@@ -0,0 +1,114 @@
+package com.ai.core;
+
+/**
+ * Post-training int8 version of a GenAnn, for inference only.
+ * Weights are quantized per neuron (row) with a symmetric scale, biases stay float.
+ * Activations are quantized to 0..127, so each dot product is a pure int accumulate.
+ */
+public class QuantizedGenAnn implements InferenceModel {
+    private static final long serialVersionUID = 1L;
+
+    private static final int QMAX = 127;
+
+    private final int[] layerSizes; // inputs, hidden..., outputs
+    private final byte[] weights;   // Row-major per layer, bias column removed
+    private final float[] scales;   // One per neuron
+    private final float[] biases;   // One per neuron, sign already applied
+
+    public QuantizedGenAnn(GenAnn source) {
+        layerSizes = source.getLayerSizes();
+
+        double[] w = new double[source.getTotalWeights()];
+        source.copyWeightsTo(w);
+
+        int rows = 0;
+        for (int l = 1; l < layerSizes.length; l++) rows += layerSizes[l];
+        weights = new byte[w.length - rows];
+        scales = new float[rows];
+        biases = new float[rows];
+
+        int src = 0, dst = 0, row = 0;
+        for (int l = 1; l < layerSizes.length; l++) {
+            int prev = layerSizes[l - 1];
+            for (int j = 0; j < layerSizes[l]; j++) {
+                biases[row] = (float) (w[src++] * -1.0);
+                double maxAbs = 0;
+                for (int k = 0; k < prev; k++) maxAbs = Math.max(maxAbs, Math.abs(w[src + k]));
+                double scale = maxAbs > 0 ? maxAbs / QMAX : 1.0;
+                for (int k = 0; k < prev; k++) {
+                    weights[dst++] = (byte) Math.round(w[src++] / scale);
+                }
+                scales[row++] = (float) scale;
+            }
+        }
+    }
+
+    public int getInputs() { return layerSizes[0]; }
+    public int getOutputs() { return layerSizes[layerSizes.length - 1]; }
+
+    public long memoryBytes() {
+        return weights.length + (long) scales.length * (Float.BYTES * 2);
+    }
+
+    // Thread safe, every call uses its own activation buffers
+    public double[] run(double[] inputVector) {
+        int inputs = layerSizes[0];
+
+        // Inputs get a per-sample scale, everything after a sigmoid is in [0, 1]
+        double maxAbs = 0;
+        for (int k = 0; k < inputs; k++) maxAbs = Math.max(maxAbs, Math.abs(inputVector[k]));
+        double actScale = maxAbs > 0 ? maxAbs / QMAX : 1.0;
+
+        byte[] act = new byte[inputs];
+        int[] active = new int[inputs];
+        int activeCount = 0;
+        for (int k = 0; k < inputs; k++) {
+            act[k] = (byte) Math.round(inputVector[k] / actScale);
+            if (act[k] != 0) active[activeCount++] = k;
+        }
+        // Same idea as GenAnn's sparse path: blank pixels contribute nothing to the first layer
+        boolean sparseInput = activeCount <= inputs * GenAnn.DEFAULT_SPARSE_THRESHOLD;
+
+        int w = 0, row = 0;
+        int last = layerSizes.length - 1;
+        double[] ret = new double[layerSizes[last]];
+
+        for (int l = 1; l <= last; l++) {
+            int prev = layerSizes[l - 1];
+            int size = layerSizes[l];
+            byte[] next = (l < last) ? new byte[size] : null;
+
+            for (int j = 0; j < size; j++) {
+                int acc = 0;
+                if (l == 1 && sparseInput) {
+                    for (int a = 0; a < activeCount; a++) {
+                        int k = active[a];
+                        acc += weights[w + k] * act[k];
+                    }
+                } else {
+                    for (int k = 0; k < prev; k++) {
+                        acc += weights[w + k] * act[k];
+                    }
+                }
+                w += prev;
+
+                double val = GenAnn.sigmoid(biases[row] + acc * (double) scales[row] * actScale);
+                row++;
+                if (next != null) next[j] = (byte) Math.round(val * QMAX);
+                else ret[j] = val;
+            }
+
+            act = next;
+            actScale = 1.0 / QMAX;
+        }
+        return ret;
+    }
+
+    public double[][] runBatch(double[][] inputVectors) {
+        double[][] ret = new double[inputVectors.length][];
+        for (int b = 0; b < inputVectors.length; b++) {
+            ret[b] = run(inputVectors[b]);
+        }
+        return ret;
+    }
+}
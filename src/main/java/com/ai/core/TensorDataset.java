@@ -0,0 +1,291 @@
+package com.ai.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Preprocessed training samples as two row-major float64 matrices (inputs, targets),
+ * memory-mapped from a dataset file so they live off-heap and load without parsing.
+ * <p>
+ * File layout, little-endian: a 64 byte header (magic "GADS", version, dtype, rows,
+ * input columns, target columns, generation key hash, content hash), then every input
+ * row, then every target row. The content hash covers each input row followed by its
+ * target row, in row order. Small datasets can also be built straight from flat heap arrays.
+ */
+public class TensorDataset {
+
+    public static final int MAGIC = 0x53444147; // "GADS" read as a little-endian int
+    public static final int VERSION = 1;
+    public static final int DTYPE_FLOAT64 = 1;
+    public static final int HEADER_BYTES = 64;
+
+    // A single mapping can't exceed 2 GB, so each matrix is mapped in chunks of whole rows
+    private static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE & ~7L;
+
+    private final int rows;
+    private final int inputCols;
+    private final int targetCols;
+    private final long keyHash;
+    private final long contentHash;
+    private final Matrix inputs;
+    private final Matrix targets;
+    private Path source; // Mapped file, null for heap datasets
+
+    private TensorDataset(int rows, int inputCols, int targetCols, long keyHash, long contentHash, Matrix inputs, Matrix targets) {
+        this.rows = rows;
+        this.inputCols = inputCols;
+        this.targetCols = targetCols;
+        this.keyHash = keyHash;
+        this.contentHash = contentHash;
+        this.inputs = inputs;
+        this.targets = targets;
+    }
+
+    // Wraps flat row-major arrays without copying them
+    public static TensorDataset fromArrays(int inputCols, double[] inputs, int targetCols, double[] targets) {
+        if (inputCols <= 0 || targetCols <= 0 || inputs.length % inputCols != 0
+                || targets.length != inputs.length / inputCols * targetCols) {
+            throw new IllegalArgumentException("Arrays don't hold whole rows of " + inputCols + "/" + targetCols);
+        }
+        int rows = inputs.length / inputCols;
+        long h = FNV_OFFSET;
+        for (int r = 0; r < rows; r++) {
+            h = hash(h, inputs, r * inputCols, inputCols);
+            h = hash(h, targets, r * targetCols, targetCols);
+        }
+        return new TensorDataset(rows, inputCols, targetCols, 0, h,
+                Matrix.wrap(inputs, rows, inputCols), Matrix.wrap(targets, rows, targetCols));
+    }
+
+    // All rows in file order, ready to be shuffled or split
+    public DatasetView rows() {
+        return DatasetView.all(this);
+    }
+
+    public int size() { return rows; }
+    public int inputSize() { return inputCols; }
+    public int targetSize() { return targetCols; }
+    public long getKeyHash() { return keyHash; }
+    public long getContentHash() { return contentHash; }
+    public Path getSource() { return source; }
+
+    public void copyInput(int row, double[] dst) {
+        inputs.copyRow(row, dst);
+    }
+
+    public void copyTarget(int row, double[] dst) {
+        targets.copyRow(row, dst);
+    }
+
+    // Read-only views over the backing buffer, nothing is copied
+    public DoubleBuffer inputRow(int row) {
+        return inputs.row(row);
+    }
+
+    public DoubleBuffer targetRow(int row) {
+        return targets.row(row);
+    }
+
+    public double[] input(int row) {
+        double[] dst = new double[inputCols];
+        inputs.copyRow(row, dst);
+        return dst;
+    }
+
+    public double[] target(int row) {
+        double[] dst = new double[targetCols];
+        targets.copyRow(row, dst);
+        return dst;
+    }
+
+    // Reads the whole file back, only needed when the file may have been tampered with
+    public boolean verify() {
+        double[] in = new double[inputCols];
+        double[] out = new double[targetCols];
+        long h = FNV_OFFSET;
+        for (int r = 0; r < rows; r++) {
+            copyInput(r, in);
+            copyTarget(r, out);
+            h = hash(h, in);
+            h = hash(h, out);
+        }
+        return h == contentHash;
+    }
+
+    // Header only, so a cache can check whether a file matches without mapping it
+    public static long readKeyHash(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(ch);
+            return header.getLong(24);
+        }
+    }
+
+    public static TensorDataset map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(ch);
+            int rows = header.getInt(12);
+            int inputCols = header.getInt(16);
+            int targetCols = header.getInt(20);
+            long expected = HEADER_BYTES + (long) rows * (inputCols + targetCols) * Double.BYTES;
+            if (ch.size() != expected) {
+                throw new IOException("Truncated dataset " + file + ": " + ch.size() + " bytes, expected " + expected);
+            }
+            long inputBytes = (long) rows * inputCols * Double.BYTES;
+            // The mappings stay valid after the channel is closed
+            Matrix inputs = Matrix.map(ch, HEADER_BYTES, rows, inputCols);
+            Matrix targets = Matrix.map(ch, HEADER_BYTES + inputBytes, rows, targetCols);
+            TensorDataset dataset = new TensorDataset(rows, inputCols, targetCols, header.getLong(24), header.getLong(32), inputs, targets);
+            dataset.source = file.toAbsolutePath();
+            return dataset;
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel ch) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (ch.read(header, header.position()) < 0) throw new IOException("Dataset header truncated");
+        }
+        if (header.getInt(0) != MAGIC) throw new IOException("Not a dataset file");
+        if (header.getInt(4) != VERSION) throw new IOException("Unsupported dataset version " + header.getInt(4));
+        if (header.getInt(8) != DTYPE_FLOAT64) throw new IOException("Unsupported dataset dtype " + header.getInt(8));
+        return header;
+    }
+
+    // Streams rows straight into the file so a big dataset never has to be on the heap at once.
+    // Rows are written to the target file as given, the header goes in last on close().
+    public static class Writer implements AutoCloseable {
+        private final FileChannel ch;
+        private final int rows;
+        private final int inputCols;
+        private final int targetCols;
+        private final long keyHash;
+        private final long targetsStart;
+        private final ByteBuffer inBuf;
+        private final ByteBuffer outBuf;
+        private int written = 0;
+        private long contentHash = FNV_OFFSET;
+
+        public Writer(Path file, int rows, int inputCols, int targetCols, long keyHash) throws IOException {
+            this.rows = rows;
+            this.inputCols = inputCols;
+            this.targetCols = targetCols;
+            this.keyHash = keyHash;
+            this.targetsStart = HEADER_BYTES + (long) rows * inputCols * Double.BYTES;
+            this.inBuf = ByteBuffer.allocate(inputCols * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            this.outBuf = ByteBuffer.allocate(targetCols * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            this.ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+
+        public void add(double[] input, double[] target) throws IOException {
+            if (written >= rows) throw new IllegalStateException("Dataset already has " + rows + " rows");
+            if (input.length != inputCols || target.length != targetCols) {
+                throw new IllegalArgumentException("Row shape " + input.length + "/" + target.length
+                        + " doesn't match " + inputCols + "/" + targetCols);
+            }
+            writeRow(inBuf, input, HEADER_BYTES + (long) written * inputCols * Double.BYTES);
+            writeRow(outBuf, target, targetsStart + (long) written * targetCols * Double.BYTES);
+            contentHash = hash(hash(contentHash, input), target);
+            written++;
+        }
+
+        private void writeRow(ByteBuffer buf, double[] row, long position) throws IOException {
+            buf.clear();
+            buf.asDoubleBuffer().put(row);
+            while (buf.hasRemaining()) {
+                position += ch.write(buf, position);
+            }
+        }
+
+        public long getContentHash() {
+            return contentHash;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (written != rows) throw new IOException("Dataset has " + written + " of " + rows + " rows");
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(DTYPE_FLOAT64)
+                        .putInt(rows).putInt(inputCols).putInt(targetCols)
+                        .putLong(keyHash).putLong(contentHash);
+                header.clear();
+                long position = 0;
+                while (header.hasRemaining()) {
+                    position += ch.write(header, position);
+                }
+                ch.force(false);
+            } finally {
+                ch.close();
+            }
+        }
+    }
+
+    // One mapped matrix, split into chunks of whole rows
+    private static class Matrix {
+        private final DoubleBuffer[] chunks;
+        private final int rowsPerChunk;
+        private final int cols;
+
+        private Matrix(DoubleBuffer[] chunks, int rowsPerChunk, int cols) {
+            this.chunks = chunks;
+            this.rowsPerChunk = rowsPerChunk;
+            this.cols = cols;
+        }
+
+        static Matrix wrap(double[] data, int rows, int cols) {
+            return new Matrix(new DoubleBuffer[]{DoubleBuffer.wrap(data).asReadOnlyBuffer()}, Math.max(rows, 1), cols);
+        }
+
+        static Matrix map(FileChannel ch, long start, int rows, int cols) throws IOException {
+            long rowBytes = (long) Math.max(cols, 1) * Double.BYTES;
+            int rowsPerChunk = (int) Math.max(1, Math.min(rows, MAX_CHUNK_BYTES / rowBytes));
+            int chunkCount = rows == 0 ? 0 : (rows + rowsPerChunk - 1) / rowsPerChunk;
+            DoubleBuffer[] chunks = new DoubleBuffer[chunkCount];
+            for (int c = 0; c < chunkCount; c++) {
+                int chunkRows = Math.min(rowsPerChunk, rows - c * rowsPerChunk);
+                MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY,
+                        start + (long) c * rowsPerChunk * cols * Double.BYTES, (long) chunkRows * cols * Double.BYTES);
+                chunks[c] = mapped.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            }
+            return new Matrix(chunks, rowsPerChunk, cols);
+        }
+
+        void copyRow(int row, double[] dst) {
+            // Absolute bulk get, so concurrent readers don't share a position
+            chunks[row / rowsPerChunk].get((row % rowsPerChunk) * cols, dst, 0, cols);
+        }
+
+        DoubleBuffer row(int row) {
+            return chunks[row / rowsPerChunk].slice((row % rowsPerChunk) * cols, cols);
+        }
+    }
+
+    // 64-bit FNV-1a over the raw bits of each value
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static long hash(long h, double[] values) {
+        return hash(h, values, 0, values.length);
+    }
+
+    private static long hash(long h, double[] values, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            h = (h ^ Double.doubleToRawLongBits(values[i])) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    public static long hash(String key) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * FNV_PRIME;
+        }
+        return h;
+    }
+}
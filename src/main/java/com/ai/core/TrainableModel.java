@@ -0,0 +1,9 @@
+package com.ai.core;
+
+// Single-sample training/inference API shared by GenAnn and ConvNet.
+// Not thread safe: both reuse internal scratch buffers.
+public interface TrainableModel extends InferenceModel {
+    double[] run(double[] inputVector);
+
+    void train(double[] inputs, double[] desiredOutputs, double learningRate);
+}
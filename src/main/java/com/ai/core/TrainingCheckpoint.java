@@ -0,0 +1,32 @@
+package com.ai.core;
+
+import java.io.Serializable;
+
+/**
+ * Loop state of a training job at an epoch boundary. Plain SGD has no optimizer state beyond the
+ * weights, and the sample order is a pure function of shuffleSeed and the number of shuffles so
+ * far, so replaying epochsDone shuffles on the restored view continues with the exact same order.
+ * The dataset is identified by its file and hashes, a resume refuses a file that changed.
+ */
+public class TrainingCheckpoint implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public String jobId;
+    public String kind;
+    public long seed;
+    public long created;
+
+    public TrainableModel model;
+    public int epochsDone;
+    public int totalEpochs;
+    public double learningRate;
+    public long shuffleSeed;
+
+    public String datasetFile;
+    public long datasetKeyHash;
+    public long datasetContentHash;
+    public int trainRows;
+
+    // Whatever the owner needs to finish the job after training, e.g. the puzzle screenshot
+    public Serializable job;
+}
@@ -2,14 +2,21 @@ package com.ai.api;
 
 import com.ai.service.NeuralNetService;
 import com.ai.service.PuzzleService;
+import com.ai.entity.VectorLayer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.awt.geom.Point2D;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 import javax.imageio.ImageIO;
 
@@ -19,38 +26,130 @@ import javax.imageio.ImageIO;
 public class AiController {
 
     @Autowired private PuzzleService puzzleService;
+    @Autowired private com.ai.service.CheckpointStore checkpointStore;
 
     @PostMapping("/puzzle/solve")
-    public ResponseEntity<String> solvePuzzle(@RequestParam("screenshot") MultipartFile file) {
+    public ResponseEntity<String> solvePuzzle(@RequestParam("screenshot") MultipartFile file,
+                                              @RequestParam("uploadId") String uploadId,
+                                              @RequestParam(value = "layerId", defaultValue = "-1") int layerId,
+                                              @RequestParam(value = "seed", required = false) Long seed) {
         try {
+            VectorLayer layer = swfService.findLayer(uploadId, layerId);
+            if (layer == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Unknown or expired upload/layer: " + uploadId + "/" + layerId);
+            }
             BufferedImage img = ImageIO.read(file.getInputStream());
             // Fire and forget: Train on vectors, find in screenshot
-            puzzleService.trainPuzzleSolver(img); 
-            return ResponseEntity.ok("Analyzing screenshot...");
+            long runSeed = nnService.resolveSeed(seed);
+            // Checkpoints are kept under this id, see POST /api/checkpoints/{jobId}/resume
+            String jobId = "puzzle-" + UUID.randomUUID();
+            checkpointStore.claim(jobId);
+            try {
+                puzzleService.trainPuzzleSolver(img, layer, runSeed, jobId);
+            } catch (RuntimeException e) {
+                checkpointStore.release(jobId);
+                throw e;
+            }
+            return ResponseEntity.ok("Analyzing screenshot... (seed " + runSeed + ", job " + jobId + ")");
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body(e.getMessage());
         }
     }
 
+    @Autowired private com.ai.service.DistributedTrainingService distributedService;
+
+    // Starts the coordinator and returns the port and job token workers should connect with
+    @PostMapping("/puzzle/distributed")
+    public ResponseEntity<String> startDistributed(@RequestBody DistributedTrainingRequest request) {
+        try {
+            com.ai.service.DistributedTrainingService.Job job = distributedService.start(request);
+            return ResponseEntity.ok("Waiting for " + request.getWorkers() + " workers on port " + job.port()
+                    + ", token " + job.token());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/puzzle/distributed/{port}")
+    public ResponseEntity<Map<String, Object>> distributedStats(@PathVariable("port") int port) {
+        Map<String, Object> stats = distributedService.getStats(port);
+        return stats != null ? ResponseEntity.ok(stats) : ResponseEntity.notFound().build();
+    }
+
     @Autowired
     private NeuralNetService nnService;
 
     @PostMapping("/train")
-    public ResponseEntity<String> startTraining() {
+    public ResponseEntity<String> startTraining(@RequestParam(value = "seed", required = false) Long seed) {
         try {
-            nnService.startTraining(false);
-            return ResponseEntity.ok("Training started asynchronously. Check logs.");
+            long runSeed = nnService.resolveSeed(seed);
+            nnService.startTraining(runSeed);
+            return ResponseEntity.ok("Training started asynchronously (seed " + runSeed + "). Check logs.");
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body(e.getMessage());
         }
     }
     
     @Autowired private com.ai.service.SwfService swfService;
+    @Autowired private com.ai.service.SwfParseLimiter swfParseLimiter;
     @PostMapping("/swf/upload")
-    public ResponseEntity<SwfResponse> uploadSwf(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<SwfResponse> uploadSwf(@RequestParam("file") MultipartFile file,
+                                                 @RequestParam(value = "tolerance", required = false) Double tolerance) {
         try {
-            SwfResponse response = swfService.parseSwf(file);
+            SwfResponse response = swfService.parseSwf(file, tolerance);
             return ResponseEntity.ok(response);
+        } catch (com.ai.service.SwfParseLimiter.TooLargeException e) {
+            // Too big to ever fit the parse budget
+            System.out.println("Rejected SWF upload: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        } catch (IllegalArgumentException e) {
+            // Not a SWF, its compressed body is broken, or FFDec couldn't parse it
+            System.out.println("Rejected SWF upload: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (RejectedExecutionException e) {
+            System.out.println("SWF parser busy: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "5").build();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/swf/parse-stats")
+    public Map<String, Object> swfParseStats() {
+        return swfParseLimiter.getStats();
+    }
+
+    @GetMapping("/swf/{uploadId}/sprites/{spriteId}/frames")
+    public ResponseEntity<List<List<SwfInstance>>> getSpriteFrames(@PathVariable("uploadId") String uploadId,
+                                                                   @PathVariable("spriteId") int spriteId,
+                                                                   @RequestParam(value = "from", defaultValue = "0") int from,
+                                                                   @RequestParam(value = "count", defaultValue = "-1") int count) {
+        List<List<SwfInstance>> frames = swfService.getSpriteFrames(uploadId, spriteId, from, count);
+        if (frames == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(frames);
+    }
+
+    @Autowired private com.ai.service.ShapeAtlasService atlasService;
+
+    @GetMapping(value = "/swf/{uploadId}/shapes/{charId}/thumbnail", produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<byte[]> getShapeThumbnail(@PathVariable("uploadId") String uploadId,
+                                                    @PathVariable("charId") int charId,
+                                                    @RequestParam(value = "size", defaultValue = "64") int size) {
+        VectorLayer layer = swfService.findLayer(uploadId, charId);
+        if (layer == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            BufferedImage thumb = atlasService.thumbnail(layer, Math.max(8, Math.min(512, size)));
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ImageIO.write(thumb, "png", bos);
+            return ResponseEntity.ok(bos.toByteArray());
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.internalServerError().build();
@@ -58,7 +157,10 @@ public class AiController {
     }
 
     @PostMapping("/points")
-    public ResponseEntity<String> startSomeTraining(@RequestBody List<PointRequest> pointDtos) {
+    public ResponseEntity<String> startSomeTraining(@RequestBody List<PointRequest> pointDtos,
+                                                    @RequestParam(value = "seed", required = false) Long seed,
+                                                    @RequestParam(value = "incremental", defaultValue = "true") boolean incremental,
+                                                    @RequestParam(value = "session", required = false) String session) {
         try {
             System.out.println("Received " + pointDtos.size() + " points from Angular.");
 
@@ -67,11 +169,21 @@ public class AiController {
                     .map(dto -> new Point2D.Double(dto.getX(), dto.getY()))
                     .toArray(Point2D.Double[]::new);
 
-            nnService.generateSomeShapeDataset(points);
+            // Rendered here and passed along, the async job never reads another request's shape
+            NeuralNetService.CustomShape shape = nnService.generateSomeShapeDataset(points);
             
-            nnService.startTraining(true);
+            long runSeed = nnService.resolveSeed(seed);
+            // Without a client session id there's no previous model of ours to start from
+            if (session != null && session.isBlank()) session = null;
+            boolean warmStart = incremental && session != null;
+            if (warmStart) {
+                // Warm start from this session's last shape model
+                nnService.startFineTuning(session, shape, runSeed);
+            } else {
+                nnService.startCustomTraining(session, shape, runSeed);
+            }
 
-            return ResponseEntity.ok("Received points. Starting custom training.");
+            return ResponseEntity.ok("Received points. Starting " + (warmStart ? "incremental" : "custom") + " training (seed " + runSeed + ").");
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.internalServerError().body("Error: " + e.getMessage());
@@ -0,0 +1,66 @@
+package com.ai.api;
+
+import com.ai.service.ArtifactStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Generated frames, GIFs and puzzle_solved.png. Names get reused between runs, so by default
+// browsers revalidate every time and get a 304 while the ETag still matches.
+@RestController
+@CrossOrigin(origins = "*")
+public class ArtifactController {
+
+    @Autowired private ArtifactStore artifactStore;
+
+    @Value("${artifacts.max-age-seconds:0}")
+    private long maxAgeSeconds;
+
+    @GetMapping("/images/{name:.+}")
+    public ResponseEntity<byte[]> image(@PathVariable("name") String name,
+                                        @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        return serve(ArtifactStore.IMAGES, name, ifNoneMatch);
+    }
+
+    @GetMapping("/custom/{name:.+}")
+    public ResponseEntity<byte[]> custom(@PathVariable("name") String name,
+                                         @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        return serve(ArtifactStore.CUSTOM, name, ifNoneMatch);
+    }
+
+    @GetMapping("/api/artifacts/stats")
+    public Map<String, Object> stats() {
+        return artifactStore.getStats();
+    }
+
+    private ResponseEntity<byte[]> serve(String area, String name, String ifNoneMatch) {
+        try {
+            ArtifactStore.Artifact artifact = artifactStore.get(area, name);
+            if (artifact == null) {
+                return ResponseEntity.notFound().build();
+            }
+            CacheControl cacheControl = maxAgeSeconds > 0
+                    ? CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic()
+                    : CacheControl.noCache();
+            if (ifNoneMatch != null && (ifNoneMatch.contains(artifact.etag) || ifNoneMatch.trim().equals("*"))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(artifact.etag).cacheControl(cacheControl).build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(artifact.etag)
+                    .cacheControl(cacheControl)
+                    .contentType(artifact.contentType)
+                    .body(artifact.bytes);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
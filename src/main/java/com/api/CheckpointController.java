@@ -0,0 +1,67 @@
+package com.ai.api;
+
+import com.ai.core.TrainingCheckpoint;
+import com.ai.service.CheckpointStore;
+import com.ai.service.PuzzleService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/checkpoints")
+@CrossOrigin(origins = "*")
+public class CheckpointController {
+
+    @Autowired private CheckpointStore checkpointStore;
+    @Autowired private PuzzleService puzzleService;
+
+    // Unfinished jobs with the epoch their newest valid checkpoint reached, "running" ones can't be resumed
+    @GetMapping
+    public ResponseEntity<List<Map<String, Object>>> list() {
+        try {
+            return ResponseEntity.ok(checkpointStore.list());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/{jobId}/resume")
+    public ResponseEntity<String> resume(@PathVariable("jobId") String jobId) {
+        try {
+            if (!checkpointStore.claim(jobId)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("Job " + jobId + " is still running");
+            }
+            boolean queued = false;
+            try {
+                // Only read under the claim: a run that ended just before it has finished the job,
+                // and its checkpoint files may not be deleted yet
+                if (checkpointStore.isFinished(jobId)) {
+                    return ResponseEntity.status(HttpStatus.CONFLICT).body("Job " + jobId + " already finished");
+                }
+                TrainingCheckpoint checkpoint = checkpointStore.latest(jobId);
+                if (checkpoint == null) {
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No valid checkpoint for job " + jobId);
+                }
+                if (!"puzzle".equals(checkpoint.kind)) {
+                    return ResponseEntity.badRequest().body("Can't resume " + checkpoint.kind + " jobs");
+                }
+                puzzleService.resume(checkpoint);
+                queued = true;
+                return ResponseEntity.accepted().body("Resuming job " + jobId + " at epoch " + checkpoint.epochsDone + "/" + checkpoint.totalEpochs);
+            } finally {
+                // Never got queued (refused, or e.g. the training queue is full), nothing else will release it
+                if (!queued) checkpointStore.release(jobId);
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().body(e.getMessage());
+        }
+    }
+}
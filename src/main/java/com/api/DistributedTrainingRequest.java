@@ -0,0 +1,20 @@
+package com.ai.api;
+
+import lombok.Data;
+
+// Data-parallel puzzle training, see ParameterServer. Workers are either started here
+// (localWorkers) or by hand with: java -cp <classes> com.ai.core.ParameterWorker <host> <port> <token>
+@Data
+public class DistributedTrainingRequest {
+    private String uploadId;
+    private int layerId = -1;
+    private Long seed;
+
+    private int[] hiddenLayers = {128};
+    private double learningRate = 0.1;
+    private int workers = 2;         // Connections to wait for before training starts
+    private int localWorkers = 0;    // Worker JVMs to spawn on this machine
+    private String mode = "SYNC";    // SYNC or ASYNC
+    private int stepsPerRound = 100; // Samples each worker trains between averages
+    private int rounds = 500;
+}
@@ -0,0 +1,115 @@
+package com.ai.api;
+
+import com.ai.service.ImageService;
+import com.ai.service.InferenceBatcher;
+import com.ai.service.ModelRegistry;
+import com.ai.service.PredictionCache;
+import com.ai.service.QuantizationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/models")
+@CrossOrigin(origins = "*")
+public class ModelController {
+
+    @Autowired private ModelRegistry modelRegistry;
+    @Autowired private ImageService imageService;
+    @Autowired private InferenceBatcher batcher;
+    @Autowired private QuantizationService quantizationService;
+    @Autowired private PredictionCache predictionCache;
+
+    @GetMapping
+    public Map<String, Integer> listModels() {
+        return modelRegistry.listModels();
+    }
+
+    @GetMapping("/stats")
+    public Map<String, Object> batchingStats() {
+        return batcher.getStats();
+    }
+
+    @GetMapping("/cache")
+    public Map<String, Object> cacheStats() {
+        return predictionCache.getStats();
+    }
+
+    // Raw image, downsampled to 32x32 the same way the model's training data was
+    @PostMapping(value = "/{name}/predict", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<PredictionResponse> predictImage(@PathVariable("name") String name,
+                                                           @RequestParam("image") MultipartFile file) {
+        try {
+            ModelRegistry.ModelVersion model = modelRegistry.get(name);
+            if (model == null) {
+                return ResponseEntity.notFound().build();
+            }
+            BufferedImage img = ImageIO.read(file.getInputStream());
+            if (img == null) {
+                return ResponseEntity.badRequest().build();
+            }
+            return ResponseEntity.ok(predict(model, imageService.downsample(img, model.invertedInput)));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    // Pre-downsampled input vector (1024 values for the image models)
+    @PostMapping(value = "/{name}/predict", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PredictionResponse> predictVector(@PathVariable("name") String name,
+                                                            @RequestBody double[] input) {
+        try {
+            ModelRegistry.ModelVersion model = modelRegistry.get(name);
+            if (model == null) {
+                return ResponseEntity.notFound().build();
+            }
+            if (input.length != model.net.getInputs()) {
+                return ResponseEntity.badRequest().build();
+            }
+            return ResponseEntity.ok(predict(model, input));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/{name}/quantize")
+    public ResponseEntity<QuantizationReport> quantize(@PathVariable("name") String name,
+                                                       @RequestBody QuantizeRequest request) {
+        try {
+            QuantizationReport report = quantizationService.quantize(name, request.getInputs(), request.getTargets());
+            if (report == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    // Repeated inputs are answered from the cache, concurrent callers for the same model share
+    // one batched forward pass
+    private PredictionResponse predict(ModelRegistry.ModelVersion model, double[] input) throws Exception {
+        PredictionResponse response = new PredictionResponse();
+        response.setModel(model.name);
+        response.setVersion(model.version);
+        double[] outputs = predictionCache.get(model, input);
+        response.setCached(outputs != null);
+        if (outputs == null) {
+            outputs = batcher.submit(model, input).get();
+            predictionCache.put(model, input, outputs);
+        }
+        response.setOutputs(outputs);
+        return response;
+    }
+}
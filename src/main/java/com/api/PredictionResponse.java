@@ -0,0 +1,11 @@
+package com.ai.api;
+
+import lombok.Data;
+
+@Data
+public class PredictionResponse {
+    private String model;
+    private int version;
+    private double[] outputs;
+    private boolean cached;
+}
@@ -0,0 +1,22 @@
+package com.ai.api;
+
+import lombok.Data;
+
+@Data
+public class QuantizationReport {
+    private String model;          // Name the int8 version was published under
+    private int sourceVersion;
+    private int quantizedVersion;
+    private int samples;
+
+    // int8 outputs vs double outputs
+    private double meanAbsDelta;
+    private double maxAbsDelta;
+
+    // Against the held-out targets, if any were given
+    private Double doubleMse;
+    private Double int8Mse;
+
+    private long doubleBytes;
+    private long int8Bytes;
+}
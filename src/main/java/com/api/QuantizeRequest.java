@@ -0,0 +1,11 @@
+package com.ai.api;
+
+import lombok.Data;
+import java.util.List;
+
+// Held-out samples to measure the int8 model against. Targets are optional.
+@Data
+public class QuantizeRequest {
+    private List<double[]> inputs;
+    private List<double[]> targets;
+}
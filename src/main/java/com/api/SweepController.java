@@ -0,0 +1,43 @@
+package com.ai.api;
+
+import com.ai.service.SweepService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/sweeps")
+@CrossOrigin(origins = "*")
+public class SweepController {
+
+    @Autowired private SweepService sweepService;
+
+    // Starts the sweep in the background, poll GET /api/sweeps/{id} for progress
+    @PostMapping
+    public ResponseEntity<SweepStatus> start(@RequestBody SweepRequest request) {
+        try {
+            return ResponseEntity.accepted().body(sweepService.start(request));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Rejected sweep: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping
+    public List<SweepStatus> list() {
+        return sweepService.list();
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<SweepStatus> get(@PathVariable("id") String id) {
+        try {
+            SweepStatus status = sweepService.get(id);
+            return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
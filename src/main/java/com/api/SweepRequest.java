@@ -0,0 +1,27 @@
+package com.ai.api;
+
+import lombok.Data;
+import java.util.List;
+
+// Search space for a hyperparameter sweep. "grid" tries every combination, "random" draws
+// `trials` configs: hidden layers and epochs from the lists, learning rate log-uniform
+// between the smallest and largest listed rate.
+@Data
+public class SweepRequest {
+    private String dataset = "puzzle"; // "puzzle", "arc" or "custom"
+    private String uploadId;           // puzzle only
+    private int layerId = -1;          // puzzle only, -1 = first layer
+    private Long seed;                 // null = training.seed / random
+
+    private String mode = "grid";
+    private List<int[]> hiddenLayers = List.of(new int[]{128});
+    private List<Double> learningRates = List.of(0.1);
+    private List<Integer> epochs = List.of(200);
+    private int trials = 20;
+
+    private int maxConcurrent = 0;     // 0 = sweep.max-concurrent
+    private double validationFraction = 0.1;
+    private int evalEvery = 10;        // epochs between validation passes
+    private int patience = 3;          // validation passes without improvement before a trial stops
+    private String modelName;          // best model is published as this, default <dataset>-sweep
+}
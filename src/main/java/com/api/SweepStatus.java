@@ -0,0 +1,29 @@
+package com.ai.api;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class SweepStatus {
+    private String id;
+    private String dataset;
+    private String mode;
+    private long seed;
+    private String state = "QUEUED"; // QUEUED, RUNNING, COMPLETED, FAILED
+    private String error;
+    private int maxConcurrent;
+    private int trainRows;
+    private int validationRows;
+
+    private List<SweepTrial> trials = new ArrayList<>();
+
+    private Integer bestTrial;
+    private Double bestValLoss;
+    private String bestModel;
+    private Integer bestModelVersion;
+
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,18 @@
+package com.ai.api;
+
+import lombok.Data;
+
+@Data
+public class SweepTrial {
+    private int index;
+    private int[] hiddenLayers;
+    private double learningRate;
+    private int epochs;
+
+    private String state = "QUEUED"; // QUEUED, RUNNING, COMPLETED, STOPPED, FAILED
+    private String stopReason;       // "patience" or "median" when STOPPED, the error when FAILED
+    private int epochsRun;
+    private Double bestValLoss;      // Mean squared error on the validation split
+    private int bestEpoch;
+    private long trainingMs;
+}
@@ -8,6 +8,7 @@ import java.util.Map;
 
 @Data
 public class SwfResponse {
+    private String uploadId; // Key for layer/sprite lookups in follow-up requests
     private String name;
     private List<SwfShape> shapes;
     private List<SwfSprite> sprites;
@@ -2,10 +2,19 @@ package com.ai.api;
 
 import lombok.Data;
 import java.util.List;
+import java.util.Map;
 
 @Data
 public class SwfSprite {
     private int spriteId;
     private int frameCount;
-    private List<List<SwfInstance>> frames;
-}
\ No newline at end of file
+
+    // Shared matrix pool, instances reference it by index
+    private List<double[]> matrices;
+
+    // Full PLACE lists every N frames so random access doesn't replay from frame 0
+    private Map<Integer, List<SwfTimelineOp>> keyframes;
+
+    // deltas.get(f) turns frame f-1 into frame f (empty when nothing changed)
+    private List<List<SwfTimelineOp>> deltas;
+}
@@ -0,0 +1,20 @@
+package com.ai.api;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class SwfTimelineOp {
+    private String type; // "PLACE", "MOVE", "REMOVE"
+    private int depth;
+    private int charId;
+    private int matrix = -1; // Index into SwfSprite.matrices, -1 = identity
+
+    public SwfTimelineOp(String type, int depth, int charId, int matrix) {
+        this.type = type;
+        this.depth = depth;
+        this.charId = charId;
+        this.matrix = matrix;
+    }
+}
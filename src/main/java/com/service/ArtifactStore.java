@@ -0,0 +1,209 @@
+package com.ai.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import jakarta.annotation.PostConstruct;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.Pattern;
+
+// Generated images served under /images (Output/) and /custom (Some/). New artifacts only live
+// in memory; the least recently used ones are written to their folder once the byte budget is
+// exceeded and read back from there on demand. Files already in the folders are served too.
+@Service
+public class ArtifactStore {
+
+    public static final String IMAGES = "images";
+    public static final String CUSTOM = "custom";
+    private static final Map<String, String> AREA_DIRS = Map.of(IMAGES, "Output", CUSTOM, "Some");
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_.-]+");
+
+    @Autowired @Qualifier("ioExecutor") private TaskExecutor ioExecutor;
+
+    @Value("${artifacts.max-bytes:67108864}")
+    private long maxBytes;
+
+    // Disk reads bigger than this are served but not pulled back into memory
+    @Value("${artifacts.max-promote-bytes:4194304}")
+    private long maxPromoteBytes;
+
+    public static class Artifact {
+        public final byte[] bytes;
+        public final String etag;
+        public final MediaType contentType;
+        public final long created;
+        // Read back from its file, so evicting it again needs no write
+        final boolean onDisk;
+
+        Artifact(String name, byte[] bytes, boolean onDisk) {
+            this.bytes = bytes;
+            this.onDisk = onDisk;
+            this.etag = "\"" + DigestUtils.md5DigestAsHex(bytes) + "\"";
+            this.contentType = MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM);
+            this.created = System.currentTimeMillis();
+        }
+    }
+
+    private long residentBytes = 0;
+    private long hits = 0;
+    private long diskReads = 0;
+    private long spills = 0;
+    private final LinkedHashMap<String, Artifact> resident = new LinkedHashMap<>(64, 0.75f, true);
+    // Evicted but not yet on disk; a spill only lands if its artifact is still the one here
+    private final Map<String, Artifact> spilling = new HashMap<>();
+    // Keys with a file in their folder: there at startup or spilled since
+    private final Set<String> onDisk = new HashSet<>();
+
+    @PostConstruct
+    public void scanFolders() {
+        for (Map.Entry<String, String> area : AREA_DIRS.entrySet()) {
+            String[] names = new File(area.getValue()).list();
+            if (names == null) continue;
+            synchronized (resident) {
+                for (String name : names) {
+                    if (NAME.matcher(name).matches() && !name.startsWith(".")) onDisk.add(key(area.getKey(), name));
+                }
+            }
+        }
+    }
+
+    public void put(String area, String name, byte[] bytes) {
+        Path file = path(area, name);
+        Artifact artifact = new Artifact(name, bytes, false);
+        List<Map.Entry<String, Artifact>> evicted;
+        synchronized (resident) {
+            Artifact previous = resident.put(key(area, name), artifact);
+            if (previous != null) residentBytes -= previous.bytes.length;
+            residentBytes += bytes.length;
+            // An older spill still queued must not land after this, and an older file would be
+            // served again if this one never makes it to disk. Most names have no file, so the
+            // delete only happens when one is known to exist.
+            spilling.remove(key(area, name));
+            if (onDisk.remove(key(area, name))) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            evicted = evictOverBudget();
+        }
+        for (Map.Entry<String, Artifact> e : evicted) {
+            spill(e.getKey(), e.getValue());
+        }
+    }
+
+    public Artifact get(String area, String name) throws IOException {
+        Path file = path(area, name);
+        synchronized (resident) {
+            Artifact artifact = resident.get(key(area, name));
+            if (artifact == null) artifact = spilling.get(key(area, name));
+            if (artifact != null) {
+                hits++;
+                return artifact;
+            }
+        }
+        if (!Files.isRegularFile(file)) return null;
+
+        Artifact artifact = new Artifact(name, Files.readAllBytes(file), true);
+        List<Map.Entry<String, Artifact>> evicted = List.of();
+        synchronized (resident) {
+            diskReads++;
+            String key = key(area, name);
+            if (artifact.bytes.length <= maxPromoteBytes && !resident.containsKey(key) && !spilling.containsKey(key)) {
+                resident.put(key, artifact);
+                residentBytes += artifact.bytes.length;
+                evicted = evictOverBudget();
+            }
+        }
+        for (Map.Entry<String, Artifact> e : evicted) {
+            spill(e.getKey(), e.getValue());
+        }
+        return artifact;
+    }
+
+    public Map<String, Object> getStats() {
+        synchronized (resident) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("artifacts", resident.size());
+            stats.put("residentBytes", residentBytes);
+            stats.put("maxBytes", maxBytes);
+            stats.put("memoryHits", hits);
+            stats.put("diskReads", diskReads);
+            stats.put("spills", spills);
+            return stats;
+        }
+    }
+
+    // Caller holds the lock and spills the returned entries after releasing it
+    private List<Map.Entry<String, Artifact>> evictOverBudget() {
+        List<Map.Entry<String, Artifact>> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Artifact>> it = resident.entrySet().iterator();
+        while (residentBytes > maxBytes && resident.size() > 1 && it.hasNext()) {
+            Map.Entry<String, Artifact> e = it.next();
+            residentBytes -= e.getValue().bytes.length;
+            it.remove();
+            if (!e.getValue().onDisk) {
+                spilling.put(e.getKey(), e.getValue());
+                evicted.add(e);
+            }
+        }
+        return evicted;
+    }
+
+    private void spill(String key, Artifact artifact) {
+        int slash = key.indexOf('/');
+        Path file = path(key.substring(0, slash), key.substring(slash + 1));
+        ioExecutor.execute(() -> {
+            Path tmp = null;
+            try {
+                Files.createDirectories(file.getParent());
+                // Unique and dot-prefixed, so concurrent spills don't share it and it's never served
+                tmp = Files.createTempFile(file.getParent(), "." + file.getFileName() + "-", ".tmp");
+                Files.write(tmp, artifact.bytes);
+                synchronized (resident) {
+                    if (spilling.get(key) != artifact) return; // superseded by a later put
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    tmp = null;
+                    spilling.remove(key);
+                    onDisk.add(key);
+                    spills++;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                synchronized (resident) {
+                    spilling.remove(key, artifact);
+                }
+            } finally {
+                if (tmp != null) {
+                    try {
+                        Files.deleteIfExists(tmp);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        });
+    }
+
+    private static Path path(String area, String name) {
+        String dir = AREA_DIRS.get(area);
+        if (dir == null || !NAME.matcher(name).matches() || name.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid artifact " + area + "/" + name);
+        }
+        return Paths.get(dir, name);
+    }
+
+    private static String key(String area, String name) {
+        return area + "/" + name;
+    }
+}
@@ -0,0 +1,197 @@
+package com.ai.service;
+
+import com.ai.core.TrainingCheckpoint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Checkpoints/<jobId>/epoch-000123.ckpt, newest `keep` per job. The checkpoint is serialized on
+// the calling thread (the model keeps training right after) and written on the I/O executor
+// through a temp file + rename. A length and CRC32 header lets latest() skip a damaged file and
+// fall back to the one before it.
+@Service
+public class CheckpointStore {
+
+    private static final int MAGIC = 0x434B5054; // "CKPT"
+    private static final int VERSION = 1;
+    private static final Pattern JOB_ID = Pattern.compile("[A-Za-z0-9_-]+");
+
+    @Autowired @Qualifier("ioExecutor") private TaskExecutor ioExecutor;
+
+    @Value("${checkpoints.dir:Checkpoints}")
+    private String checkpointDir;
+
+    @Value("${checkpoints.keep:2}")
+    private int keep;
+
+    // Jobs that completed, so a write still queued for them doesn't bring a checkpoint back
+    private final Set<String> finished = ConcurrentHashMap.newKeySet();
+
+    // Jobs queued or training in this process. Claimed by the caller before the @Async call, so
+    // two resumes racing for the same job can't both get through; released when training ends.
+    private final Set<String> active = ConcurrentHashMap.newKeySet();
+
+    public boolean claim(String jobId) {
+        return active.add(jobId);
+    }
+
+    public void release(String jobId) {
+        active.remove(jobId);
+    }
+
+    public boolean isFinished(String jobId) {
+        return finished.contains(jobId);
+    }
+
+    public void save(TrainingCheckpoint checkpoint) throws IOException {
+        checkpoint.created = System.currentTimeMillis();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(checkpoint);
+        }
+        byte[] payload = bytes.toByteArray();
+        Path dir = jobDir(checkpoint.jobId);
+        Path file = dir.resolve(String.format("epoch-%06d.ckpt", checkpoint.epochsDone));
+
+        ioExecutor.execute(() -> {
+            if (finished.contains(checkpoint.jobId)) return;
+            try {
+                Files.createDirectories(dir);
+                Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(payload.length);
+                    out.writeLong(crc.getValue());
+                    out.write(payload);
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                prune(dir);
+            } catch (IOException e) {
+                System.out.println("Checkpoint " + file + " not written: " + e.getMessage());
+            }
+        });
+    }
+
+    // Newest checkpoint of the job that reads back intact, null if there is none
+    public TrainingCheckpoint latest(String jobId) {
+        for (Path file : files(jobDir(jobId))) {
+            try {
+                return read(file);
+            } catch (Exception e) {
+                System.out.println("Skipping checkpoint " + file + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    public List<Map<String, Object>> list() throws IOException {
+        Path root = Paths.get(checkpointDir);
+        if (!Files.isDirectory(root)) return new ArrayList<>();
+        List<Map<String, Object>> jobs = new ArrayList<>();
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : dirs.filter(Files::isDirectory).sorted().collect(Collectors.toList())) {
+                TrainingCheckpoint latest = latest(dir.getFileName().toString());
+                if (latest == null) continue;
+                Map<String, Object> job = new LinkedHashMap<>();
+                job.put("jobId", latest.jobId);
+                job.put("kind", latest.kind);
+                job.put("seed", latest.seed);
+                job.put("epochsDone", latest.epochsDone);
+                job.put("totalEpochs", latest.totalEpochs);
+                job.put("created", latest.created);
+                job.put("running", active.contains(latest.jobId));
+                jobs.add(job);
+            }
+        }
+        return jobs;
+    }
+
+    // Dataset files the latest checkpoint of every unfinished job trains on, absolute and normalized
+    public Set<Path> datasetFiles() throws IOException {
+        Set<Path> files = new HashSet<>();
+        Path root = Paths.get(checkpointDir);
+        if (!Files.isDirectory(root)) return files;
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : dirs.filter(Files::isDirectory).collect(Collectors.toList())) {
+                String jobId = dir.getFileName().toString();
+                if (finished.contains(jobId)) continue;
+                TrainingCheckpoint latest = latest(jobId);
+                if (latest != null && latest.datasetFile != null) {
+                    files.add(Paths.get(latest.datasetFile).toAbsolutePath().normalize());
+                }
+            }
+        }
+        return files;
+    }
+
+    // Once the job finished there is nothing left to resume
+    public void delete(String jobId) {
+        Path dir = jobDir(jobId);
+        finished.add(jobId);
+        ioExecutor.execute(() -> {
+            try {
+                for (Path file : files(dir)) Files.deleteIfExists(file);
+                Files.deleteIfExists(dir);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private TrainingCheckpoint read(Path file) throws IOException, ClassNotFoundException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Not a checkpoint file");
+            byte[] payload = new byte[in.readInt()];
+            long expected = in.readLong();
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (crc.getValue() != expected) throw new IOException("Checksum mismatch");
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+                return (TrainingCheckpoint) ois.readObject();
+            }
+        }
+    }
+
+    // A write finishing out of order can't drop the newest one, names sort by epoch
+    private void prune(Path dir) throws IOException {
+        List<Path> files = files(dir);
+        for (int i = keep; i < files.size(); i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+    }
+
+    // Newest first
+    private List<Path> files(Path dir) {
+        if (!Files.isDirectory(dir)) return new ArrayList<>();
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> p.getFileName().toString().endsWith(".ckpt"))
+                    .sorted(Comparator.comparing((Path p) -> p.getFileName().toString()).reversed())
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    private Path jobDir(String jobId) {
+        if (jobId == null || !JOB_ID.matcher(jobId).matches()) {
+            throw new IllegalArgumentException("Invalid job id " + jobId);
+        }
+        return Paths.get(checkpointDir, jobId);
+    }
+}
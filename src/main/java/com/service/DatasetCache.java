@@ -0,0 +1,144 @@
+package com.ai.service;
+
+import com.ai.core.TensorDataset;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Preprocessed datasets on disk, keyed by the parameters that generated them. A job that asks for
+// the same parameters again maps the existing file instead of rendering/downsampling everything.
+// Runs with a fresh seed each build a new file, so after every build the directory is trimmed back
+// to datasets.max-bytes, least recently used first (a hit bumps the file's mtime). Files a
+// resumable checkpoint still points at, or that a running job pinned, are never removed.
+@Service
+public class DatasetCache {
+
+    @Autowired private CheckpointStore checkpointStore;
+
+    @Value("${datasets.dir:Datasets}")
+    private String datasetDir;
+
+    @Value("${datasets.max-bytes:1073741824}")
+    private long maxBytes;
+
+    // absolute normalized path -> number of jobs holding it
+    private final Map<Path, Integer> pins = new HashMap<>();
+
+    public interface Generator {
+        void generate(TensorDataset.Writer writer) throws IOException;
+    }
+
+    // kind names the generator (e.g. "puzzle"), params must contain everything that changes its output
+    public TensorDataset getOrBuild(String kind, String params, int rows, int inputCols, int targetCols, Generator generator) throws IOException {
+        String key = kind + "|" + rows + "x" + inputCols + "x" + targetCols + "|" + params;
+        long keyHash = TensorDataset.hash(key);
+        Path dir = Paths.get(datasetDir);
+        Files.createDirectories(dir);
+        Path file = dir.resolve(kind + "-" + Long.toHexString(keyHash) + ".tds");
+
+        if (Files.exists(file)) {
+            try {
+                if (TensorDataset.readKeyHash(file) == keyHash) {
+                    TensorDataset cached = TensorDataset.map(file);
+                    if (cached.size() == rows && cached.inputSize() == inputCols && cached.targetSize() == targetCols) {
+                        System.out.println("Dataset cache hit: " + file);
+                        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                        return cached;
+                    }
+                }
+            } catch (IOException e) {
+                // Half-written or from an older format, just build it again
+                System.out.println("Ignoring unreadable dataset " + file + ": " + e.getMessage());
+            }
+        }
+
+        long start = System.nanoTime();
+        // Unique temp file, so two jobs building the same dataset don't write over each other
+        Path tmp = Files.createTempFile(dir, kind + "-", ".tds.tmp");
+        try {
+            try (TensorDataset.Writer writer = new TensorDataset.Writer(tmp, rows, inputCols, targetCols, keyHash)) {
+                generator.generate(writer);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        System.out.println("Built dataset " + file + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        TensorDataset built = TensorDataset.map(file);
+        evict(dir, file);
+        return built;
+    }
+
+    // For jobs that hand the file to someone else by path (e.g. distributed workers) rather than
+    // keeping it mapped. Returns false if it was evicted before the pin; build it again then.
+    public synchronized boolean pin(Path file) {
+        Path p = file.toAbsolutePath().normalize();
+        pins.merge(p, 1, Integer::sum);
+        return Files.exists(p);
+    }
+
+    public synchronized void unpin(Path file) {
+        pins.computeIfPresent(file.toAbsolutePath().normalize(), (p, n) -> n > 1 ? n - 1 : null);
+    }
+
+    // Deleting a file another job has mapped is fine on Linux/macOS, the mapping stays valid; where
+    // the OS refuses (Windows) the file is skipped and retried after the next build
+    private synchronized void evict(Path dir, Path keep) {
+        try {
+            List<Path> files;
+            try (Stream<Path> list = Files.list(dir)) {
+                files = list.filter(p -> p.getFileName().toString().endsWith(".tds")).collect(Collectors.toList());
+            }
+            Map<Path, FileTime> lastUsed = new HashMap<>();
+            long total = 0;
+            for (Path p : files) {
+                lastUsed.put(p, Files.getLastModifiedTime(p));
+                total += Files.size(p);
+            }
+            if (total <= maxBytes) return;
+
+            Set<Path> pinned = checkpointStore.datasetFiles();
+            pinned.addAll(pins.keySet());
+            files.sort(Comparator.comparing(lastUsed::get));
+            for (Path p : files) {
+                if (total <= maxBytes) break;
+                if (p.equals(keep) || pinned.contains(p.toAbsolutePath().normalize())) continue;
+                long size = Files.size(p);
+                try {
+                    Files.deleteIfExists(p);
+                    total -= size;
+                    System.out.println("Evicted dataset " + p + " (" + size / 1024 + " KB)");
+                } catch (IOException e) {
+                    System.out.println("Dataset " + p + " not evicted: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Stable text form of a shape's outline, for use in dataset params
+    public static String geometryKey(Shape shape) {
+        StringBuilder sb = new StringBuilder();
+        double[] coords = new double[6];
+        int[] coordCount = {2, 2, 4, 6, 0}; // MOVETO, LINETO, QUADTO, CUBICTO, CLOSE
+        for (PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+            int type = it.currentSegment(coords);
+            sb.append(type);
+            for (int i = 0; i < coordCount[type]; i++) {
+                sb.append(',').append(coords[i]);
+            }
+            sb.append(';');
+        }
+        return Long.toHexString(TensorDataset.hash(sb.toString())) + "/" + sb.length();
+    }
+}
@@ -0,0 +1,158 @@
+package com.ai.service;
+
+import com.ai.api.DistributedTrainingRequest;
+import com.ai.core.GenAnn;
+import com.ai.core.ParameterServer;
+import com.ai.core.TensorDataset;
+import com.ai.entity.VectorLayer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Runs a ParameterServer for the puzzle dataset and publishes the averaged network as "puzzle-dist".
+// The dataset file is handed to workers by path, so workers on other machines need it at the same path;
+// it is pinned in the DatasetCache until the job ends so late workers still find it.
+// The coordinator listens on dist.bind-address (loopback by default, set it to reach other hosts) and
+// only accepts workers that present the random per-job token returned by start().
+@Service
+public class DistributedTrainingService {
+
+    @Autowired private PuzzleService puzzleService;
+    @Autowired private NeuralNetService nnService;
+    @Autowired private SwfService swfService;
+    @Autowired private ModelRegistry modelRegistry;
+    @Autowired private DatasetCache datasetCache;
+    @Autowired @Qualifier("coordinatorExecutor") private TaskExecutor coordinatorExecutor;
+
+    @Value("${dist.port:0}") // 0 = any free port, reported back to the caller
+    private int port;
+
+    @Value("${dist.bind-address:127.0.0.1}")
+    private String bindAddress;
+
+    @Value("${dist.accept-timeout-ms:30000}")
+    private int acceptTimeoutMs;
+
+    @Value("${dist.worker-timeout-ms:120000}")
+    private int workerTimeoutMs;
+
+    @Value("${dist.max-local-workers:8}")
+    private int maxLocalWorkers;
+
+    // port -> running coordinator, for the stats endpoint
+    private final Map<Integer, ParameterServer> running = new ConcurrentHashMap<>();
+
+    private final SecureRandom tokens = new SecureRandom();
+
+    public record Job(int port, String token) {}
+
+    public Job start(DistributedTrainingRequest request) throws IOException {
+        VectorLayer layer = swfService.findLayer(request.getUploadId(), request.getLayerId());
+        if (layer == null) {
+            throw new IllegalArgumentException("Unknown or expired upload/layer: " + request.getUploadId() + "/" + request.getLayerId());
+        }
+        if (request.getWorkers() < 1 || request.getLocalWorkers() < 0 || request.getLocalWorkers() > maxLocalWorkers) {
+            throw new IllegalArgumentException("Need at least one worker and at most " + maxLocalWorkers + " local ones");
+        }
+
+        long seed = nnService.resolveSeed(request.getSeed());
+        System.out.println("Distributed puzzle training with seed " + seed);
+        SplittableRandom seeds = new SplittableRandom(seed);
+        long dataSeed = seeds.nextLong();
+        TensorDataset dataset = puzzleService.buildDataset(layer, dataSeed);
+
+        int[] hidden = request.getHiddenLayers();
+        int[] layerSizes = new int[hidden.length + 2];
+        layerSizes[0] = dataset.inputSize();
+        System.arraycopy(hidden, 0, layerSizes, 1, hidden.length);
+        layerSizes[layerSizes.length - 1] = dataset.targetSize();
+        GenAnn initial = new GenAnn(layerSizes, seeds.nextLong());
+
+        ParameterServer.Options options = new ParameterServer.Options();
+        options.workers = request.getWorkers();
+        options.mode = ParameterServer.Mode.valueOf(request.getMode().toUpperCase());
+        options.stepsPerRound = request.getStepsPerRound();
+        options.rounds = request.getRounds();
+        options.learningRate = request.getLearningRate();
+        options.seed = seeds.nextLong();
+        options.acceptTimeoutMs = acceptTimeoutMs;
+        options.readTimeoutMs = workerTimeoutMs;
+        options.bindAddress = InetAddress.getByName(bindAddress);
+        byte[] secret = new byte[16];
+        tokens.nextBytes(secret);
+        options.token = HexFormat.of().formatHex(secret);
+
+        // Workers map the file by path, possibly long after this, so keep it out of eviction until the job ends
+        Path datasetFile = dataset.getSource();
+        ParameterServer server;
+        try {
+            if (!datasetCache.pin(datasetFile)) {
+                // Another build evicted it in between; now that it's pinned the rebuild stays
+                puzzleService.buildDataset(layer, dataSeed);
+            }
+            server = new ParameterServer(port, initial, datasetFile, options);
+        } catch (IOException | RuntimeException e) {
+            datasetCache.unpin(datasetFile);
+            throw e;
+        }
+        int boundPort = server.getPort();
+        running.put(boundPort, server);
+
+        // The coordinator thread only moves bytes and sums deltas, the training happens in the workers
+        coordinatorExecutor.execute(() -> {
+            List<Process> workers = new ArrayList<>();
+            try (server) {
+                for (int i = 0; i < request.getLocalWorkers(); i++) {
+                    workers.add(spawnLocalWorker(boundPort, options.token));
+                }
+                GenAnn trained = server.run();
+                modelRegistry.publish("puzzle-dist", trained, false);
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                running.remove(boundPort);
+                datasetCache.unpin(datasetFile);
+                for (Process p : workers) {
+                    try {
+                        if (!p.waitFor(10, TimeUnit.SECONDS)) p.destroyForcibly();
+                    } catch (InterruptedException e) {
+                        p.destroyForcibly();
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        return new Job(boundPort, options.token);
+    }
+
+    public Map<String, Object> getStats(int port) {
+        ParameterServer server = running.get(port);
+        return server != null ? server.getStats() : null;
+    }
+
+    // Same JVM binary and classpath as this process, works from the IDE / spring-boot:run
+    // The token goes through the environment rather than the command line, which other local users can list
+    private Process spawnLocalWorker(int port, String token) throws IOException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        String host = InetAddress.getByName(bindAddress).isAnyLocalAddress() ? "localhost" : bindAddress;
+        ProcessBuilder pb = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "com.ai.core.ParameterWorker", host, String.valueOf(port));
+        pb.environment().put("GENANN_DIST_TOKEN", token);
+        pb.inheritIO();
+        return pb.start();
+    }
+}
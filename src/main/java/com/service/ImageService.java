@@ -1,12 +1,21 @@
 package com.ai.service;
 
 import org.springframework.stereotype.Service;
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 @Service
 public class ImageService {
@@ -14,7 +23,7 @@ public class ImageService {
     public static final int HEIGHT = 128;
     public static final int THICKNESS = 5;
 
-    public void saveSomePng(String path, Point2D.Double[] points, Color c) {
+    public BufferedImage renderSome(Point2D.Double[] points, Color c) {
         BufferedImage img = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
         Graphics2D g = img.createGraphics();
         
@@ -44,16 +53,10 @@ public class ImageService {
         
         g.drawPolygon(xPoints, yPoints, n);
         g.dispose();
-        
-        try {
-            ImageIO.write(img, "png", new File(path));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        return img;
     }
 
-    // ... (Keep savePngArc and loadAndDownsample as they were) ...
-    public void savePngArc(String path, double cx, double cy, double r, double startAngle, double endAngle, Color c) throws IOException {
+    public BufferedImage renderArc(double cx, double cy, double r, double startAngle, double endAngle, Color c) {
         BufferedImage img = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
         Graphics2D g = img.createGraphics();
         g.setColor(Color.WHITE);
@@ -67,11 +70,79 @@ public class ImageService {
         double y = cy - r;
         g.drawArc((int)x, (int)y, (int)(r*2), (int)(r*2), (int)-degreesStart, (int)-extent);
         g.dispose();
-        ImageIO.write(img, "png", new File(path));
+        return img;
+    }
+
+    public byte[] toPng(BufferedImage img) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", bos);
+        return bos.toByteArray();
+    }
+
+    // Looping animated GIF, delay in 1/100 s per frame (what ImageMagick's -delay means)
+    public byte[] toAnimatedGif(List<BufferedImage> frames, int delayCs) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+            writer.setOutput(ios);
+            writer.prepareWriteSequence(null);
+            for (int i = 0; i < frames.size(); i++) {
+                BufferedImage frame = frames.get(i);
+                IIOMetadata metadata = gifFrameMetadata(writer, param, frame, delayCs, i == 0);
+                writer.writeToSequence(new IIOImage(frame, null, metadata), param);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+        return bos.toByteArray();
+    }
+
+    private static IIOMetadata gifFrameMetadata(ImageWriter writer, ImageWriteParam param, BufferedImage frame,
+                                                int delayCs, boolean first) throws IOException {
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(frame), param);
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+        IIOMetadataNode control = childNode(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(delayCs));
+        control.setAttribute("transparentColorIndex", "0");
+
+        if (first) {
+            // NETSCAPE2.0 block with loop count 0 = loop forever, only needed once
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            loop.setUserObject(new byte[]{1, 0, 0});
+            childNode(root, "ApplicationExtensions").appendChild(loop);
+        }
+        metadata.setFromTree(format, root);
+        return metadata;
+    }
+
+    private static IIOMetadataNode childNode(IIOMetadataNode root, String name) {
+        for (int i = 0; i < root.getLength(); i++) {
+            if (root.item(i).getNodeName().equalsIgnoreCase(name)) return (IIOMetadataNode) root.item(i);
+        }
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        root.appendChild(node);
+        return node;
     }
 
     public double[] loadAndDownsample(File file) throws IOException {
-        BufferedImage img = ImageIO.read(file);
+        return downsample(ImageIO.read(file), true);
+    }
+
+    public double[] bufferToDownsampledArray(BufferedImage img) {
+        return downsample(img, false); // Note: Not inverted, assumes black BG
+    }
+
+    // 32x32 nearest-neighbour sample of the red channel, inverted for black-on-white drawings
+    public double[] downsample(BufferedImage img, boolean invert) {
         double[] inputs = new double[32 * 32];
         double scaleX = (double) img.getWidth() / 32;
         double scaleY = (double) img.getHeight() / 32;
@@ -81,26 +152,9 @@ public class ImageService {
                 int srcY = (int) (y * scaleY);
                 int rgb = img.getRGB(srcX, srcY);
                 int red = (rgb >> 16) & 0xFF;
-                inputs[y * 32 + x] = 1.0 - (red / 255.0);
+                inputs[y * 32 + x] = invert ? 1.0 - (red / 255.0) : red / 255.0;
             }
         }
         return inputs;
     }
-
-    public double[] bufferToDownsampledArray(BufferedImage img) {
-    double[] inputs = new double[32 * 32];
-    double scaleX = (double) img.getWidth() / 32;
-    double scaleY = (double) img.getHeight() / 32;
-
-    for (int y = 0; y < 32; y++) {
-        for (int x = 0; x < 32; x++) {
-            int srcX = (int) (x * scaleX);
-            int srcY = (int) (y * scaleY);
-            int rgb = img.getRGB(srcX, srcY);
-            int red = (rgb >> 16) & 0xFF;
-            inputs[y * 32 + x] = red / 255.0; // Note: Not inverted this time, assumes black BG
-        }
-    }
-    return inputs;
 }
-}
\ No newline at end of file
@@ -0,0 +1,144 @@
+package com.ai.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Groups concurrent predictions for the same model version into one GenAnn.runBatch call.
+// A batch is flushed when it is full, when its oldest request hits the deadline, or right away
+// if nothing is running for that model (so a lone request never waits for company).
+@Service
+public class InferenceBatcher {
+
+    @Value("${inference.batch.max-size:32}")
+    private int maxBatchSize;
+
+    @Value("${inference.batch.max-delay-micros:2000}")
+    private long maxDelayMicros;
+
+    private final ExecutorService workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    // Metrics
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong fullFlushes = new AtomicLong();
+    private final AtomicLong idleFlushes = new AtomicLong();
+    private final AtomicLong deadlineFlushes = new AtomicLong();
+
+    private static class Request {
+        final double[] input;
+        final CompletableFuture<double[]> result = new CompletableFuture<>();
+
+        Request(double[] input) {
+            this.input = input;
+        }
+    }
+
+    private static class ModelQueue {
+        List<Request> pending = new ArrayList<>();
+        int inFlight = 0;
+        ScheduledFuture<?> deadline;
+    }
+
+    // Guarded by synchronized (queues)
+    private final Map<ModelRegistry.ModelVersion, ModelQueue> queues = new HashMap<>();
+
+    public CompletableFuture<double[]> submit(ModelRegistry.ModelVersion model, double[] input) {
+        Request request = new Request(input);
+        synchronized (queues) {
+            ModelQueue q = queues.computeIfAbsent(model, k -> new ModelQueue());
+            q.pending.add(request);
+
+            if (q.inFlight == 0) {
+                idleFlushes.incrementAndGet();
+                dispatch(model, q);
+            } else if (q.pending.size() >= maxBatchSize) {
+                fullFlushes.incrementAndGet();
+                dispatch(model, q);
+            } else if (q.deadline == null) {
+                q.deadline = timer.schedule(() -> onDeadline(model), maxDelayMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+        return request.result;
+    }
+
+    private void onDeadline(ModelRegistry.ModelVersion model) {
+        synchronized (queues) {
+            ModelQueue q = queues.get(model);
+            if (q == null) return;
+            q.deadline = null;
+            if (!q.pending.isEmpty()) {
+                deadlineFlushes.incrementAndGet();
+                dispatch(model, q);
+            }
+        }
+    }
+
+    // Caller holds the lock
+    private void dispatch(ModelRegistry.ModelVersion model, ModelQueue q) {
+        List<Request> batch = q.pending;
+        q.pending = new ArrayList<>();
+        q.inFlight++;
+        if (q.deadline != null) {
+            q.deadline.cancel(false);
+            q.deadline = null;
+        }
+        workers.execute(() -> runBatch(model, batch));
+    }
+
+    private void runBatch(ModelRegistry.ModelVersion model, List<Request> batch) {
+        batches.incrementAndGet();
+        samples.addAndGet(batch.size());
+        try {
+            double[][] inputs = new double[batch.size()][];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = batch.get(i).input;
+            }
+            double[][] outputs = model.net.runBatch(inputs);
+            for (int i = 0; i < outputs.length; i++) {
+                batch.get(i).result.complete(outputs[i]);
+            }
+        } catch (Exception e) {
+            batch.forEach(r -> r.result.completeExceptionally(e));
+        } finally {
+            synchronized (queues) {
+                ModelQueue q = queues.get(model);
+                q.inFlight--;
+                if (!q.pending.isEmpty() && q.inFlight == 0) {
+                    // Whatever queued up behind us goes now rather than waiting for its deadline
+                    idleFlushes.incrementAndGet();
+                    dispatch(model, q);
+                } else if (q.pending.isEmpty() && q.inFlight == 0) {
+                    queues.remove(model); // Don't pin old model versions after a hot swap
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long b = batches.get();
+        long s = samples.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batches", b);
+        stats.put("samples", s);
+        stats.put("avgBatchSize", b > 0 ? (double) s / b : 0.0);
+        stats.put("avgFill", b > 0 ? (double) s / b / maxBatchSize : 0.0);
+        stats.put("fullFlushes", fullFlushes.get());
+        stats.put("idleFlushes", idleFlushes.get());
+        stats.put("deadlineFlushes", deadlineFlushes.get());
+        stats.put("maxBatchSize", maxBatchSize);
+        stats.put("maxDelayMicros", maxDelayMicros);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,145 @@
+package com.ai.service;
+
+import com.ai.core.InferenceModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Named, versioned GenAnn (or QuantizedGenAnn) models. Every published version is written to Models/<name>/v<N>.ser,
+// the most recently used ones stay resident under a byte budget and are reloaded on demand.
+@Service
+public class ModelRegistry {
+
+    private static final String MODEL_DIR = "Models";
+    private static final Pattern VERSION_FILE = Pattern.compile("v(\\d+)\\.ser");
+    private static final Pattern MODEL_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+    @Autowired private PredictionCache predictionCache;
+
+    @Value("${models.max-resident-bytes:268435456}")
+    private long maxResidentBytes;
+
+    public static class ModelVersion {
+        public final String name;
+        public final int version;
+        public final InferenceModel net;
+        public final boolean invertedInput; // Trained on black-on-white drawings (see ImageService.downsample)
+        public final long bytes;
+
+        ModelVersion(String name, int version, InferenceModel net, boolean invertedInput) {
+            this.name = name;
+            this.version = version;
+            this.net = net;
+            this.invertedInput = invertedInput;
+            this.bytes = net.memoryBytes();
+        }
+    }
+
+    // name -> latest published version. Swapping this entry is what makes a new version live.
+    private final Map<String, Integer> latest = new ConcurrentHashMap<>();
+
+    private long residentBytes = 0;
+    private final LinkedHashMap<String, ModelVersion> resident = new LinkedHashMap<>(16, 0.75f, true);
+
+    public ModelVersion publish(String name, InferenceModel net, boolean invertedInput) throws IOException {
+        if (!MODEL_NAME.matcher(name).matches()) throw new IllegalArgumentException("Invalid model name: " + name);
+        synchronized (latest) {
+            int version = latestVersion(name) + 1;
+            ModelVersion mv = new ModelVersion(name, version, net, invertedInput);
+
+            Path dir = Paths.get(MODEL_DIR, name);
+            Files.createDirectories(dir);
+            Path tmp = dir.resolve("v" + version + ".ser.tmp");
+            try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                oos.writeObject(net);
+                oos.writeBoolean(invertedInput);
+            }
+            Files.move(tmp, dir.resolve("v" + version + ".ser"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            makeResident(mv);
+            latest.put(name, version); // In-flight predictions keep the version they already hold
+            predictionCache.invalidate(name);
+            System.out.println("Published model " + name + " v" + version);
+            return mv;
+        }
+    }
+
+    public ModelVersion get(String name) throws IOException {
+        if (!MODEL_NAME.matcher(name).matches()) return null;
+        int version = latestVersion(name);
+        return version > 0 ? get(name, version) : null;
+    }
+
+    public ModelVersion get(String name, int version) throws IOException {
+        synchronized (resident) {
+            ModelVersion mv = resident.get(key(name, version));
+            if (mv != null) return mv;
+        }
+
+        Path file = Paths.get(MODEL_DIR, name, "v" + version + ".ser");
+        if (!Files.exists(file)) return null;
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            InferenceModel net = (InferenceModel) ois.readObject();
+            ModelVersion mv = new ModelVersion(name, version, net, ois.readBoolean());
+            makeResident(mv);
+            return mv;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Corrupt model file " + file, e);
+        }
+    }
+
+    public Map<String, Integer> listModels() {
+        Map<String, Integer> models = new TreeMap<>();
+        File[] dirs = new File(MODEL_DIR).listFiles(File::isDirectory);
+        if (dirs != null) {
+            for (File dir : dirs) {
+                int version = latestVersion(dir.getName());
+                if (version > 0) models.put(dir.getName(), version);
+            }
+        }
+        return models;
+    }
+
+    private int latestVersion(String name) {
+        Integer known = latest.get(name);
+        if (known != null) return known;
+
+        // Not published in this JVM yet, fall back to whatever is on disk
+        int max = 0;
+        String[] files = new File(MODEL_DIR, name).list();
+        if (files != null) {
+            for (String f : files) {
+                Matcher m = VERSION_FILE.matcher(f);
+                if (m.matches()) max = Math.max(max, Integer.parseInt(m.group(1)));
+            }
+        }
+        if (max > 0) latest.putIfAbsent(name, max);
+        return max;
+    }
+
+    private void makeResident(ModelVersion mv) {
+        synchronized (resident) {
+            ModelVersion previous = resident.put(key(mv.name, mv.version), mv);
+            if (previous != null) residentBytes -= previous.bytes;
+            residentBytes += mv.bytes;
+
+            // Evicted models are simply reloaded from disk next time they're asked for
+            Iterator<ModelVersion> it = resident.values().iterator();
+            while (residentBytes > maxResidentBytes && resident.size() > 1 && it.hasNext()) {
+                residentBytes -= it.next().bytes;
+                it.remove();
+            }
+        }
+    }
+
+    private static String key(String name, int version) {
+        return name + "@" + version;
+    }
+}
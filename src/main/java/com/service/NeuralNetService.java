@@ -2,18 +2,20 @@ package com.ai.service;
 
 import com.ai.api.StatusResponse;
 import com.ai.core.GenAnn;
+import com.ai.core.TensorDataset;
 import com.ai.entity.TrainingLog;
 import com.ai.repo.TrainingLogRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
-import java.awt.*;
 import java.io.*;
 import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.List;
 import java.awt.geom.Point2D;
 
 @Service
@@ -21,206 +23,205 @@ public class NeuralNetService {
 
     @Autowired private TrainingLogRepository logRepo;
     @Autowired private ImageService imageService;
+    @Autowired private ModelRegistry modelRegistry;
+    @Autowired private DatasetCache datasetCache;
+    @Autowired private ArtifactStore artifactStore;
+    @Autowired @Qualifier("ioExecutor") private TaskExecutor ioExecutor;
 
     private static final String OUTPUT_DIR = "Output";
     private static final String SOME_DIR = "Some";
-    
-    private GenAnn ann;
-    
-    // Main data containers
-    private final List<double[]> trainingInputs = new ArrayList<>();
-    private final List<double[]> trainingOutputs = new ArrayList<>();
-    private final List<File> groundTruthFiles = new ArrayList<>();
 
-    private boolean isCustomMode = false;
-    private int customOutputSize = 0;
+    // Weight buffers being written at once; training blocks on the next snapshot beyond this
+    @Value("${training.snapshots-in-flight:2}")
+    private int snapshotsInFlight;
 
-    public void initEnvironment(boolean custom) throws IOException {
-        String targetDir = custom ? SOME_DIR : OUTPUT_DIR;
-        Files.createDirectories(Paths.get(targetDir));
-
-        // If in custom mode but no data sent yet, create a default square
-        if (custom) {
-             Point2D.Double[] defaultSquare = new Point2D.Double[] {
-                 new Point2D.Double(0.2, 0.2), // Normalized coordinates (0.0 - 1.0)
-                 new Point2D.Double(0.2, 0.8),
-                 new Point2D.Double(0.8, 0.8),
-                 new Point2D.Double(0.8, 0.2)
-             };
-             generateSomeShapeDataset(defaultSquare);
-        } else {
-             // Default Arc Mode
-             if (new File(targetDir).list().length < 5) {
-                generateDefaultDataset();
-             }
-        }
-    }
+    // Seed for dataset generation, shuffles and weight init when a request doesn't pass one.
+    // Negative = pick a fresh one per run (it's logged either way so the run can be repeated)
+    @Value("${training.seed:-1}")
+    private long configuredSeed;
 
-    private void clearData() {
-        trainingInputs.clear();
-        trainingOutputs.clear();
-        groundTruthFiles.clear();
+    // Epochs for a warm-started custom run, the full run is 1000
+    @Value("${training.fine-tune-epochs:150}")
+    private int fineTuneEpochs;
+
+    // Last custom model per client session, least recently used dropped first
+    @Value("${training.max-session-models:32}")
+    private int maxSessionModels;
+    private final LinkedHashMap<String, GenAnn> sessionModels = new LinkedHashMap<>(16, 0.75f, true);
+    
+    // A drawn shape and its rendered samples. Built in the request thread and handed to the
+    // training job, so a second /api/points call can't swap the data under a queued run.
+    public record CustomShape(double[] target, ShapeTraining samples) {}
+
+    // Last shape posted by any session, only for the "custom" sweep dataset
+    private volatile CustomShape lastCustomShape;
+
+    public long resolveSeed(Long requested) {
+        if (requested != null) return requested;
+        if (configuredSeed >= 0) return configuredSeed;
+        return new SplittableRandom().nextLong();
     }
 
     // --- GENERATORS ---
 
-    public void generateSomeShapeDataset(Point2D.Double[] shapePoints) throws IOException {
+    public CustomShape generateSomeShapeDataset(Point2D.Double[] shapePoints) throws IOException {
         Files.createDirectories(Paths.get(SOME_DIR));
-        clearData();
-        isCustomMode = true;
-        customOutputSize = shapePoints.length * 2; // x and y for every point
-
-        // Flatten the points into one single target array for the neural net
-        // Expected format: [x1, y1, x2, y2, x3, y3...]
-        double[] flatTarget = new double[customOutputSize];
-        for (int k = 0; k < shapePoints.length; k++) {
-            flatTarget[k*2]     = shapePoints[k].x;
-            flatTarget[k*2 + 1] = shapePoints[k].y;
-        }
+        ShapeTraining samples = new ShapeTraining(imageService);
+        samples.generateShape(shapePoints, (name, png) -> artifactStore.put(ArtifactStore.CUSTOM, name, png));
+        CustomShape shape = new CustomShape(ShapeTraining.flatten(shapePoints), samples);
+        lastCustomShape = shape;
+        return shape;
+    }
 
-        // Generate 10 sample images (overfitting to this specific shape)
-        Random r = new Random();
-        for (int i = 1; i <= 10; i++) {
-            String filename = String.format("%s/output_%03d.png", SOME_DIR, i);
-            
-            // Draw the shape (ImageService will handle scaling 0-1 to 128px)
-            imageService.saveSomePng(filename, shapePoints, Color.BLACK);
-            
-            groundTruthFiles.add(new File(filename));
-            
-            // Add the flattened target. 
-            // Note: Since we want the NN to learn THIS specific shape for any input,
-            // we give it the same target output for all samples.
-            trainingOutputs.add(flatTarget);
-        }
+    // Used when a custom sweep runs before anyone drew a shape; its images aren't shown anywhere
+    private CustomShape defaultSquare() throws IOException {
+        Point2D.Double[] defaultSquare = new Point2D.Double[] {
+            new Point2D.Double(0.2, 0.2), // Normalized coordinates (0.0 - 1.0)
+            new Point2D.Double(0.2, 0.8),
+            new Point2D.Double(0.8, 0.8),
+            new Point2D.Double(0.8, 0.2)
+        };
+        ShapeTraining samples = new ShapeTraining(imageService);
+        samples.generateShape(defaultSquare, (name, png) -> {});
+        return new CustomShape(ShapeTraining.flatten(defaultSquare), samples);
     }
 
-    private void generateDefaultDataset() throws IOException {
-        Files.createDirectories(Paths.get(OUTPUT_DIR));
-        clearData();
-        isCustomMode = false;
-        Random r = new Random();
-        for (int i = 1; i <= 10; i++) {
-            double cx = 14 + r.nextInt(100);
-            double cy = 14 + r.nextInt(100);
-            double rad = 20 + r.nextInt(60);
-            double ang1 = r.nextDouble() * 2 * Math.PI;
-            double ang2 = r.nextDouble() * 2 * Math.PI;
-            
-            String filename = String.format("%s/output_%03d.png", OUTPUT_DIR, i);
-            imageService.savePngArc(filename, cx, cy, rad, Math.min(ang1, ang2), Math.max(ang1, ang2), Color.BLACK);
-            
-            groundTruthFiles.add(new File(filename));
-            
-            // Output: 5 parameters normalized
-            double[] out = {cx/128.0, cy/128.0, rad/100.0, Math.min(ang1,ang2)/(2*Math.PI), Math.max(ang1,ang2)/(2*Math.PI)};
-            trainingOutputs.add(out);
-        }
+    // For sweeps: the UI's ground-truth images are left alone
+    public TensorDataset prepareDataset(boolean custom, long dataSeed) throws IOException {
+        if (!custom) return prepareArcDataset(dataSeed, (name, png) -> {});
+        CustomShape shape = lastCustomShape;
+        return prepareCustomDataset(shape != null ? shape : defaultSquare());
+    }
+
+    // The downsampled inputs only depend on the arc seed / the drawn points, reuse them if we've seen those before.
+    // The ground-truth images go to `images` on every call, hit or miss: they depend on the seed and are cheap to draw.
+    private TensorDataset prepareArcDataset(long dataSeed, ShapeTraining.ArtifactSink images) throws IOException {
+        ShapeTraining samples = new ShapeTraining(imageService);
+        samples.generateArcs(dataSeed, images);
+        return datasetCache.getOrBuild("arc", "seed=" + dataSeed, ShapeTraining.SAMPLES, 1024, ShapeTraining.ARC_OUTPUTS,
+                samples::writeTo);
+    }
+
+    private TensorDataset prepareCustomDataset(CustomShape shape) throws IOException {
+        String params = "points=" + Arrays.toString(shape.target());
+        return datasetCache.getOrBuild("custom", params, ShapeTraining.SAMPLES, 1024, shape.target().length,
+                writer -> shape.samples().writeTo(writer));
     }
 
     // --- TRAINING ---
 
-    @Async
-    public void startTraining(boolean custom) throws Exception {
-        // Ensure data is loaded (if not already by the controller)
-        if (groundTruthFiles.isEmpty()) {
-            initEnvironment(custom);
+    @Async("trainingExecutor")
+    public void startTraining(long seed) throws Exception {
+        System.out.println("Training arc model with seed " + seed);
+        // Independent streams, so e.g. a different dataset size doesn't change the initial weights
+        SplittableRandom seeds = new SplittableRandom(seed);
+        long dataSeed = seeds.nextLong();
+        long initSeed = seeds.nextLong();
+        long shuffleSeed = seeds.nextLong();
+
+        Files.createDirectories(Paths.get(OUTPUT_DIR));
+        TensorDataset dataset = prepareArcDataset(dataSeed, (name, png) -> artifactStore.put(ArtifactStore.IMAGES, name, png));
+        GenAnn net = new GenAnn(1024, 1, 64, dataset.targetSize(), initSeed);
+        train(false, net, dataset, 1000, shuffleSeed);
+    }
+
+    // Full run from random weights on one drawn shape, same seed streams as startTraining.
+    // With a session the result is kept as that session's model for later fine-tuning.
+    @Async("trainingExecutor")
+    public void startCustomTraining(String session, CustomShape shape, long seed) throws Exception {
+        System.out.println("Training custom model with seed " + seed);
+        SplittableRandom seeds = new SplittableRandom(seed);
+        seeds.nextLong(); // dataSeed, the custom samples don't use it
+        long initSeed = seeds.nextLong();
+        long shuffleSeed = seeds.nextLong();
+
+        TensorDataset dataset = prepareCustomDataset(shape);
+        GenAnn net = new GenAnn(1024, 1, 64, dataset.targetSize(), initSeed);
+        train(true, net, dataset, 1000, shuffleSeed);
+        if (session != null) rememberSessionModel(session, net);
+    }
+
+    // Custom shape training that continues from the session's previous model instead of random
+    // weights. A moved vertex only needs a short fine-tune; a vertex added or removed swaps in a
+    // resized output layer and keeps the hidden layer. Without a previous model it's a full run.
+    @Async("trainingExecutor")
+    public void startFineTuning(String session, CustomShape shape, long seed) throws Exception {
+        SplittableRandom seeds = new SplittableRandom(seed);
+        seeds.nextLong(); // dataSeed, the custom samples don't use it
+        long initSeed = seeds.nextLong();
+        long shuffleSeed = seeds.nextLong();
+
+        TensorDataset dataset = prepareCustomDataset(shape);
+        int outputNeurons = dataset.targetSize();
+
+        GenAnn previous;
+        synchronized (sessionModels) {
+            previous = sessionModels.get(session);
         }
-        
-        // Load Input Images
-        // Note: trainingOutputs are already populated by the generate methods above
-        for (File f : groundTruthFiles) {
-            trainingInputs.add(imageService.loadAndDownsample(f));
+        GenAnn net;
+        int lastEpoch = fineTuneEpochs;
+        if (previous == null) {
+            System.out.println("No model for session " + session + " yet, full custom training with seed " + seed);
+            net = new GenAnn(1024, 1, 64, outputNeurons, initSeed);
+            lastEpoch = 1000;
+        } else if (previous.getOutputs() == outputNeurons) {
+            System.out.println("Fine-tuning session " + session + " for " + fineTuneEpochs + " epochs (seed " + seed + ")");
+            double[] copy = new double[previous.getTotalWeights()];
+            previous.copyWeightsTo(copy);
+            net = previous.withWeights(copy);
+        } else {
+            System.out.println("Fine-tuning session " + session + " with " + previous.getOutputs() + " -> " + outputNeurons
+                    + " outputs for " + fineTuneEpochs + " epochs (seed " + seed + ")");
+            net = previous.withOutputs(outputNeurons, initSeed);
         }
 
-        int outputNeurons = custom ? customOutputSize : 5;
-        
-        // Re-init Network
-        ann = new GenAnn(1024, 1, 64, outputNeurons);
-
-        String targetDir = custom ? SOME_DIR : OUTPUT_DIR;
+        train(true, net, dataset, lastEpoch, shuffleSeed);
+        rememberSessionModel(session, net);
+    }
 
-        for (int epoch = 0; epoch <= 1000; epoch++) {
-            for (int i = 0; i < trainingInputs.size(); i++) {
-                ann.train(trainingInputs.get(i), trainingOutputs.get(i), 3.0);
+    private void rememberSessionModel(String session, GenAnn net) {
+        synchronized (sessionModels) {
+            sessionModels.put(session, net);
+            Iterator<String> it = sessionModels.keySet().iterator();
+            while (sessionModels.size() > maxSessionModels && it.hasNext()) {
+                it.next();
+                it.remove();
             }
+        }
+    }
 
+    private void train(boolean custom, GenAnn net, TensorDataset dataset, int lastEpoch, long shuffleSeed) throws Exception {
+        String targetDir = custom ? SOME_DIR : OUTPUT_DIR;
+        SnapshotWriter snapshots = new SnapshotWriter(ioExecutor, snapshotsInFlight);
+
+        Map<Integer, GenAnn> gifSnapshots = ShapeTraining.train(net, dataset, lastEpoch, 3.0, shuffleSeed, (epoch, n) -> {
             if (epoch % 10 == 0) {
-                saveSnapshot(epoch, targetDir);
+                snapshots.snapshot(n, targetDir + "/swfbrain_epoch_" + epoch + ".ser");
                 TrainingLog log = new TrainingLog();
                 log.setEpoch(epoch);
                 log.setTimestamp(LocalDateTime.now());
                 log.setSnapshotFile("swfbrain_epoch_" + epoch + ".ann");
-                logRepo.save(log);
+                ioExecutor.execute(() -> logRepo.save(log));
             }
-        }
-        
-        generateEvolutionGifs(custom);
-    }
+        });
 
-    private void saveSnapshot(int epoch, String dir) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(dir + "/swfbrain_epoch_" + epoch + ".ser"))) {
-            oos.writeObject(ann);
-        }
+        // Surfaces any failed snapshot write before the model goes live
+        snapshots.flush();
+        modelRegistry.publish(custom ? "custom" : "arc", net, true);
+        
+        // Frame rendering and GIF encoding, keep it off the training threads
+        ioExecutor.execute(() -> generateEvolutionGifs(custom, dataset, gifSnapshots));
     }
 
     // --- GIF GENERATION ---
 
-    public void generateEvolutionGifs(boolean custom) {
+    // Frames and GIFs go straight into the ArtifactStore, nothing is read back from disk
+    public void generateEvolutionGifs(boolean custom, TensorDataset dataset, Map<Integer, GenAnn> snapshots) {
         try {
-            String dir = custom ? SOME_DIR : OUTPUT_DIR;
-            List<Integer> epochs = Arrays.asList(0, 100, 200, 300, 400, 500, 600, 700, 800, 900, 1000);
-            
-            for (int i = 0; i < groundTruthFiles.size(); i++) {
-                String baseNum = String.format("%03d", i + 1);
-                List<String> framePaths = new ArrayList<>();
-
-                double[] input = trainingInputs.get(i);
-
-                for (Integer epoch : epochs) {
-                    try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(dir + "/swfbrain_epoch_" + epoch + ".ser"))) {
-                        GenAnn snap = (GenAnn) ois.readObject();
-                        double[] pred = snap.run(input);
-                        
-                        String frameName = String.format("%s/pred_%s_epoch_%d.png", dir, baseNum, epoch);
-                        
-                        if (custom) {
-                            // Reconstruct Polygon Points
-                            // pred array is [x1, y1, x2, y2 ...]
-                            int numPoints = pred.length / 2;
-                            Point2D.Double[] polyPoints = new Point2D.Double[numPoints];
-                            for(int k=0; k<numPoints; k++) {
-                                polyPoints[k] = new Point2D.Double(pred[k*2], pred[k*2+1]);
-                            }
-                            imageService.saveSomePng(frameName, polyPoints, Color.RED);
-                        } else {
-                            // Reconstruct Arc
-                            double cx = pred[0] * 128;
-                            double cy = pred[1] * 128;
-                            double r = pred[2] * 100;
-                            double a1 = pred[3] * 2 * Math.PI;
-                            double a2 = pred[4] * 2 * Math.PI;
-                            imageService.savePngArc(frameName, cx, cy, r, a1, a2, Color.RED);
-                        }
-                        framePaths.add(frameName);
-                    }
-                }
-
-                // ImageMagick
-                List<String> cmd = new ArrayList<>();
-                cmd.add("convert");
-                cmd.add("-delay"); cmd.add("16");
-                cmd.add("-loop"); cmd.add("0");
-                cmd.addAll(framePaths);
-                cmd.add(dir + "/evolution_" + baseNum + ".gif");
-
-                ProcessBuilder pb = new ProcessBuilder(cmd);
-                pb.inheritIO();
-                Process p = pb.start();
-                p.waitFor();
-            }
+            String area = custom ? ArtifactStore.CUSTOM : ArtifactStore.IMAGES;
+            new ShapeTraining(imageService).exportGifs(custom, dataset, snapshots, (name, bytes) -> artifactStore.put(area, name, bytes));
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+}
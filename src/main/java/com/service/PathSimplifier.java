@@ -0,0 +1,222 @@
+package com.ai.service;
+
+import com.ai.api.VectorCommand;
+
+import java.util.*;
+
+// Lossy clean-up of exported SWF outlines, every point of the result stays within `tolerance`
+// pixels of the original outline:
+//  - neighbouring curves that continue each other smoothly are merged into one quad, as long
+//    as the merged curve still passes within tolerance of every sampled original point
+//  - curves (merged or not) that hardly leave their chord become lines
+//  - runs of lines go through Douglas-Peucker
+// A run that contains flattened curves splits the tolerance between flattening and
+// Douglas-Peucker, so the two errors can't add up past it.
+// MOVE and STYLE commands are kept as they are and end the current run.
+final class PathSimplifier {
+
+    // Points sampled per original curve when checking a merge
+    private static final int CURVE_SAMPLES = 8;
+
+    private PathSimplifier() {}
+
+    static List<VectorCommand> simplify(List<VectorCommand> cmds, double tolerance) {
+        if (tolerance <= 0 || cmds.isEmpty()) return cmds;
+        Set<VectorCommand> flattened = Collections.newSetFromMap(new IdentityHashMap<>());
+        return simplifyLines(simplifyCurves(cmds, tolerance, flattened), tolerance, flattened);
+    }
+
+    private static List<VectorCommand> simplifyCurves(List<VectorCommand> cmds, double tolerance, Set<VectorCommand> flattened) {
+        List<VectorCommand> out = new ArrayList<>(cmds.size());
+        double penX = 0, penY = 0;
+        // Start of the curve at the end of `out` and the original points it has to stay close to
+        double curveX = 0, curveY = 0;
+        List<double[]> curveSamples = null;
+
+        for (VectorCommand cmd : cmds) {
+            if ("CURVE".equals(cmd.getType())) {
+                List<double[]> samples = sample(penX, penY, cmd);
+                VectorCommand merged = curveSamples != null ? merge(curveX, curveY, out.get(out.size() - 1), cmd) : null;
+                if (merged != null) {
+                    List<double[]> all = new ArrayList<>(curveSamples);
+                    all.addAll(samples);
+                    if (fits(curveX, curveY, merged, all, tolerance)) {
+                        out.set(out.size() - 1, merged);
+                        curveSamples = all;
+                        penX = cmd.getX();
+                        penY = cmd.getY();
+                        continue;
+                    }
+                }
+                finishCurve(out, curveX, curveY, curveSamples, tolerance, flattened);
+                out.add(cmd);
+                curveX = penX;
+                curveY = penY;
+                curveSamples = samples;
+            } else {
+                finishCurve(out, curveX, curveY, curveSamples, tolerance, flattened);
+                curveSamples = null;
+                out.add(cmd);
+            }
+            // STYLE has no geometry
+            if (!"STYLE".equals(cmd.getType())) {
+                penX = cmd.getX();
+                penY = cmd.getY();
+            }
+        }
+        finishCurve(out, curveX, curveY, curveSamples, tolerance, flattened);
+        return out;
+    }
+
+    // Nothing merges into the last curve anymore; if its chord covers every original point it
+    // stood for (within half the tolerance, the rest is left for Douglas-Peucker) make it a line
+    private static void finishCurve(List<VectorCommand> out, double x0, double y0, List<double[]> samples,
+                                    double tolerance, Set<VectorCommand> flattened) {
+        if (samples == null) return;
+        VectorCommand curve = out.get(out.size() - 1);
+        for (double[] p : samples) {
+            if (segmentDistance(p[0], p[1], x0, y0, curve.getX(), curve.getY()) > tolerance / 2) return;
+        }
+        VectorCommand line = new VectorCommand("LINE", curve.getX(), curve.getY());
+        flattened.add(line);
+        out.set(out.size() - 1, line);
+    }
+
+    private static List<VectorCommand> simplifyLines(List<VectorCommand> cmds, double tolerance, Set<VectorCommand> flattened) {
+        List<VectorCommand> out = new ArrayList<>(cmds.size());
+        double[] xs = new double[16];
+        double[] ys = new double[16];
+        int n = 0;
+        boolean halve = false;
+        double penX = 0, penY = 0;
+
+        for (VectorCommand cmd : cmds) {
+            if ("LINE".equals(cmd.getType())) {
+                if (n == 0) {
+                    xs[0] = penX;
+                    ys[0] = penY;
+                    n = 1;
+                }
+                if (n == xs.length) {
+                    xs = Arrays.copyOf(xs, n * 2);
+                    ys = Arrays.copyOf(ys, n * 2);
+                }
+                xs[n] = cmd.getX();
+                ys[n] = cmd.getY();
+                n++;
+                halve |= flattened.contains(cmd);
+            } else {
+                flushRun(xs, ys, n, halve ? tolerance / 2 : tolerance, out);
+                n = 0;
+                halve = false;
+                out.add(cmd);
+            }
+            if (!"STYLE".equals(cmd.getType())) {
+                penX = cmd.getX();
+                penY = cmd.getY();
+            }
+        }
+        flushRun(xs, ys, n, halve ? tolerance / 2 : tolerance, out);
+        return out;
+    }
+
+    private static void flushRun(double[] xs, double[] ys, int n, double tolerance, List<VectorCommand> out) {
+        if (n < 2) return;
+        boolean[] keep = douglasPeucker(xs, ys, n, tolerance);
+        for (int i = 1; i < n; i++) {
+            if (keep[i]) out.add(new VectorCommand("LINE", xs[i], ys[i]));
+        }
+    }
+
+    // Iterative, a long stroke would otherwise recurse thousands of levels deep
+    private static boolean[] douglasPeucker(double[] xs, double[] ys, int n, double tolerance) {
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        int[] stack = new int[2 * n];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        while (top > 0) {
+            int b = stack[--top];
+            int a = stack[--top];
+            double max = tolerance;
+            int index = -1;
+            for (int i = a + 1; i < b; i++) {
+                double d = segmentDistance(xs[i], ys[i], xs[a], ys[a], xs[b], ys[b]);
+                if (d > max) {
+                    max = d;
+                    index = i;
+                }
+            }
+            if (index >= 0) {
+                keep[index] = true;
+                stack[top++] = a;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = b;
+            }
+        }
+        return keep;
+    }
+
+    // One quad from the start of `first` to the end of `second`, with the control point where
+    // their outer tangents cross. Null if the tangents don't meet in front of both curves.
+    private static VectorCommand merge(double x0, double y0, VectorCommand first, VectorCommand second) {
+        double d1x = first.getCx() - x0, d1y = first.getCy() - y0;
+        double d2x = second.getCx() - second.getX(), d2y = second.getCy() - second.getY();
+        double cross = d1x * d2y - d1y * d2x;
+        if (Math.abs(cross) < 1e-12) return null;
+        double ex = second.getX() - x0, ey = second.getY() - y0;
+        double s = (ex * d2y - ey * d2x) / cross;
+        double t = (ex * d1y - ey * d1x) / cross;
+        if (s <= 0 || t <= 0) return null;
+        return new VectorCommand("CURVE", x0 + s * d1x, y0 + s * d1y, second.getX(), second.getY());
+    }
+
+    private static List<double[]> sample(double x0, double y0, VectorCommand c) {
+        List<double[]> points = new ArrayList<>(CURVE_SAMPLES);
+        for (int i = 1; i <= CURVE_SAMPLES; i++) {
+            points.add(quadAt(x0, y0, c, (double) i / CURVE_SAMPLES));
+        }
+        return points;
+    }
+
+    // Every original sample within tolerance of the candidate, flattened finely enough that the
+    // flattening error is small next to the tolerance
+    private static boolean fits(double x0, double y0, VectorCommand candidate, List<double[]> samples, double tolerance) {
+        int segments = 4 * samples.size();
+        double[] xs = new double[segments + 1];
+        double[] ys = new double[segments + 1];
+        for (int i = 0; i <= segments; i++) {
+            double[] p = quadAt(x0, y0, candidate, (double) i / segments);
+            xs[i] = p[0];
+            ys[i] = p[1];
+        }
+        for (double[] p : samples) {
+            double best = Double.MAX_VALUE;
+            for (int i = 0; i < segments && best > tolerance; i++) {
+                best = Math.min(best, segmentDistance(p[0], p[1], xs[i], ys[i], xs[i + 1], ys[i + 1]));
+            }
+            if (best > tolerance) return false;
+        }
+        return true;
+    }
+
+    private static double[] quadAt(double x0, double y0, VectorCommand c, double t) {
+        double u = 1 - t;
+        return new double[] {
+                u * u * x0 + 2 * u * t * c.getCx() + t * t * c.getX(),
+                u * u * y0 + 2 * u * t * c.getCy() + t * t * c.getY()
+        };
+    }
+
+    private static double segmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax, dy = by - ay;
+        double len2 = dx * dx + dy * dy;
+        double t = len2 > 0 ? ((px - ax) * dx + (py - ay) * dy) / len2 : 0;
+        t = Math.max(0, Math.min(1, t));
+        double qx = ax + t * dx - px, qy = ay + t * dy - py;
+        return Math.sqrt(qx * qx + qy * qy);
+    }
+}
@@ -0,0 +1,158 @@
+package com.ai.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+// Outputs of recent predictions, keyed by model name + version + a hash of the input vector.
+// The version in the key means a hot-swapped model never serves old results; publish() also
+// drops the old version's entries right away so they don't sit in the budget until evicted.
+// The input is kept next to the outputs, a hash collision is a miss and not a wrong answer.
+@Service
+public class PredictionCache {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int ENTRY_OVERHEAD = 96;
+
+    @Value("${inference.cache.max-bytes:16777216}") // 0 = off
+    private long maxBytes;
+
+    @Value("${inference.cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private static class Key {
+        final String model;
+        final int version;
+        final long inputHash;
+
+        Key(String model, int version, long inputHash) {
+            this.model = model;
+            this.version = version;
+            this.inputHash = inputHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return version == k.version && inputHash == k.inputHash && model.equals(k.model);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(inputHash) * 31 + model.hashCode() * 17 + version;
+        }
+    }
+
+    private static class Entry {
+        final double[] input;
+        final double[] outputs;
+        final long expires;
+        final long bytes;
+
+        Entry(double[] input, double[] outputs, long expires) {
+            this.input = input;
+            this.outputs = outputs;
+            this.expires = expires;
+            this.bytes = (long) (input.length + outputs.length) * Double.BYTES + ENTRY_OVERHEAD;
+        }
+    }
+
+    // Everything below is guarded by synchronized (entries)
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long residentBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long expired = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    // Cached outputs (a copy) or null
+    public double[] get(ModelRegistry.ModelVersion model, double[] input) {
+        if (maxBytes <= 0) return null;
+        Key key = new Key(model.name, model.version, hash(input));
+        synchronized (entries) {
+            Entry e = entries.get(key);
+            if (e != null && e.expires < System.currentTimeMillis()) {
+                remove(key, e);
+                expired++;
+                e = null;
+            }
+            if (e == null || !Arrays.equals(e.input, input)) {
+                misses++;
+                return null;
+            }
+            hits++;
+            return e.outputs.clone();
+        }
+    }
+
+    public void put(ModelRegistry.ModelVersion model, double[] input, double[] outputs) {
+        if (maxBytes <= 0) return;
+        Key key = new Key(model.name, model.version, hash(input));
+        Entry entry = new Entry(input.clone(), outputs.clone(), System.currentTimeMillis() + ttlSeconds * 1000);
+        if (entry.bytes > maxBytes) return;
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) residentBytes -= previous.bytes;
+            residentBytes += entry.bytes;
+
+            Iterator<Entry> it = entries.values().iterator();
+            while (residentBytes > maxBytes && it.hasNext()) {
+                residentBytes -= it.next().bytes;
+                it.remove();
+                evictions++;
+            }
+        }
+    }
+
+    // A new version of the model went live
+    public void invalidate(String model) {
+        synchronized (entries) {
+            Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, Entry> e = it.next();
+                if (e.getKey().model.equals(model)) {
+                    residentBytes -= e.getValue().bytes;
+                    it.remove();
+                    invalidations++;
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        synchronized (entries) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("entries", entries.size());
+            stats.put("residentBytes", residentBytes);
+            stats.put("maxBytes", maxBytes);
+            stats.put("hits", hits);
+            stats.put("misses", misses);
+            stats.put("hitRate", hits + misses > 0 ? (double) hits / (hits + misses) : 0.0);
+            stats.put("expired", expired);
+            stats.put("evictions", evictions);
+            stats.put("invalidations", invalidations);
+            return stats;
+        }
+    }
+
+    private void remove(Key key, Entry e) {
+        entries.remove(key);
+        residentBytes -= e.bytes;
+    }
+
+    // FNV-1a style, but a whole double per step instead of a byte; the shift mixes the high
+    // bits back down so inputs that only differ in the low mantissa bits still spread out
+    static long hash(double[] input) {
+        long h = FNV_OFFSET;
+        for (double v : input) {
+            h ^= Double.doubleToLongBits(v);
+            h *= FNV_PRIME;
+            h ^= h >>> 29;
+        }
+        return h;
+    }
+}
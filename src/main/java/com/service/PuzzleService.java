@@ -1,67 +1,213 @@
 package com.ai.service;
 
+import com.ai.api.QuantizationReport;
 import com.ai.api.StatusResponse;
+import com.ai.core.ConvNet;
+import com.ai.core.DatasetView;
 import com.ai.core.GenAnn;
+import com.ai.core.LayerProfile;
+import com.ai.core.TensorDataset;
+import com.ai.core.TrainableModel;
+import com.ai.core.TrainingCheckpoint;
 import com.ai.entity.VectorLayer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.awt.*;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
 import java.awt.image.BufferedImage;
-import java.io.File;
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 @Service
 public class PuzzleService {
 
-    @Autowired private SwfService swfService;
     @Autowired private ImageService imageService;
     @Autowired private NeuralNetService nnService; // We'll reuse the Status/Log logic
+    @Autowired private ShapeAtlasService atlasService;
+    @Autowired private ModelRegistry modelRegistry;
+    @Autowired private QuantizationService quantizationService;
+    @Autowired private DatasetCache datasetCache;
+    @Autowired private ArtifactStore artifactStore;
+    @Autowired private CheckpointStore checkpointStore;
+    @Autowired @Qualifier("ioExecutor") private TaskExecutor ioExecutor;
 
-    private GenAnn puzzleNet;
     private static final int INPUT_RES = 32;
+    private static final int CANVAS_SIZE = 128;
+    private static final double SAMPLE_SCALE = 2.0; // Arbitrary game scale
+    private static final double BACKGROUND = Color.DARK_GRAY.getRed() / 255.0;
     private static final String PUZZLE_DIR = "PuzzleOutput";
+    // We create 1000 "fake screenshots" where the sword is in random places
+    // plus a few the network never trains on, to measure the int8 model against
+    public static final int SAMPLES = 1000;
+    public static final int HELD_OUT = 100;
+
+    // Hidden layer widths, e.g. "256,32" for a tapering 1024 -> 256 -> 32 -> 3 network
+    @Value("${puzzle.hidden-layers:128}")
+    private int[] hiddenLayers;
+
+    // Put a conv/pool front-end (ConvNet.smallImage) before the dense layers
+    @Value("${puzzle.conv:false}")
+    private boolean conv;
+
+    // Also publish an int8 "puzzle-int8" model after training (dense networks only)
+    @Value("${puzzle.quantize:true}")
+    private boolean quantize;
+
+    // Epochs between resumable checkpoints, 0 = none
+    @Value("${puzzle.checkpoint-every:25}")
+    private int checkpointEvery;
+
+    // What a resumed job needs besides the loop state: the shape to render, the screenshot to solve
+    static class PuzzleJob implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String layerName;
+        Path2D.Double shape;
+        long dataSeed;
+        byte[] screenshotPng;
+    }
+
+    // The caller claims jobId in the CheckpointStore first, it's released here once training ends
+    @Async("trainingExecutor")
+    public void trainPuzzleSolver(BufferedImage targetScreenshot, VectorLayer targetLayer, long seed, String jobId) throws Exception {
+        try {
+            solve(targetScreenshot, targetLayer, seed, jobId);
+        } finally {
+            checkpointStore.release(jobId);
+        }
+    }
+
+    private void solve(BufferedImage targetScreenshot, VectorLayer targetLayer, long seed, String jobId) throws Exception {
+        System.out.println("Training puzzle model with seed " + seed + " (job " + jobId + ")");
+        SplittableRandom seeds = new SplittableRandom(seed);
+        long dataSeed = seeds.nextLong();
+        long initSeed = seeds.nextLong();
+        long shuffleSeed = seeds.nextLong();
 
-    @Async
-    public void trainPuzzleSolver(BufferedImage targetScreenshot) throws Exception {
-        List<VectorLayer> layers = swfService.loadSwfLayers();
-        VectorLayer targetLayer = layers.get(0); // Let's try to find the "Sword"
-        
-        List<double[]> inputs = new ArrayList<>();
-        List<double[]> outputs = new ArrayList<>();
-        
         // 1. GENERATE SYNTHETIC TRAINING DATA
-        // We create 1000 "fake screenshots" where the sword is in random places
-        int samples = 1000;
-        Random r = new Random();
-        
-        for(int i=0; i<samples; i++) {
-            // Random Transform 0.0 to 1.0
-            double tx = r.nextDouble();
-            double ty = r.nextDouble();
-            double rot = (r.nextDouble() - 0.5) * 1.0; // +/- 0.5 radians
-            
-            // Render the "Fake" screenshot
-            double[] imgData = renderSyntheticSample(targetLayer, tx, ty, rot);
-            inputs.add(imgData);
-            
-            // The Truth: Where was it?
-            outputs.add(new double[]{ tx, ty, rot });
+        TensorDataset dataset = buildDataset(targetLayer, dataSeed);
+
+        // 2. TRAIN NETWORK (32x32 inputs -> hidden layers -> 3 outputs: X, Y, Rot)
+        // Local, so concurrent solves for different uploads don't share a network
+        TrainableModel puzzleNet;
+        if (conv) {
+            puzzleNet = ConvNet.smallImage(INPUT_RES, hiddenLayers, 3, initSeed);
+        } else {
+            int[] layerSizes = new int[hiddenLayers.length + 2];
+            layerSizes[0] = INPUT_RES * INPUT_RES;
+            System.arraycopy(hiddenLayers, 0, layerSizes, 1, hiddenLayers.length);
+            layerSizes[layerSizes.length - 1] = 3;
+            puzzleNet = new GenAnn(layerSizes, initSeed);
         }
-        
-        // 2. TRAIN NETWORK (32x32 inputs -> 3 outputs: X, Y, Rot)
-        puzzleNet = new GenAnn(INPUT_RES*INPUT_RES, 1, 128, 3);
-        
-        for(int epoch=0; epoch<500; epoch++) {
-            for(int i=0; i<samples; i++) {
-                puzzleNet.train(inputs.get(i), outputs.get(i), 0.1);
+
+        PuzzleJob job = new PuzzleJob();
+        job.layerName = targetLayer.getName();
+        job.shape = new Path2D.Double(targetLayer.getVectorShape());
+        job.dataSeed = dataSeed;
+        job.screenshotPng = imageService.toPng(targetScreenshot);
+
+        TrainingCheckpoint checkpoint = new TrainingCheckpoint();
+        checkpoint.jobId = jobId;
+        checkpoint.kind = "puzzle";
+        checkpoint.seed = seed;
+        checkpoint.model = puzzleNet;
+        checkpoint.totalEpochs = 500;
+        checkpoint.learningRate = 0.1;
+        checkpoint.shuffleSeed = shuffleSeed;
+        checkpoint.datasetFile = dataset.getSource() != null ? dataset.getSource().toAbsolutePath().toString() : null;
+        checkpoint.datasetKeyHash = dataset.getKeyHash();
+        checkpoint.datasetContentHash = dataset.getContentHash();
+        checkpoint.trainRows = SAMPLES;
+        checkpoint.job = job;
+
+        train(checkpoint, dataset, targetScreenshot, targetLayer);
+    }
+
+    // Continues a puzzle job from its newest readable checkpoint, e.g. after a restart.
+    // Same claim / release contract as trainPuzzleSolver.
+    @Async("trainingExecutor")
+    public void resume(TrainingCheckpoint checkpoint) throws Exception {
+        try {
+            resumeClaimed(checkpoint);
+        } finally {
+            checkpointStore.release(checkpoint.jobId);
+        }
+    }
+
+    private void resumeClaimed(TrainingCheckpoint checkpoint) throws Exception {
+        PuzzleJob job = (PuzzleJob) checkpoint.job;
+        VectorLayer layer = new VectorLayer();
+        layer.setName(job.layerName);
+        layer.setVectorShape(job.shape);
+
+        // Same parameters map the same cached file; if it's gone it is rebuilt, and must come out identical
+        TensorDataset dataset = buildDataset(layer, job.dataSeed);
+        if (dataset.getKeyHash() != checkpoint.datasetKeyHash || dataset.getContentHash() != checkpoint.datasetContentHash) {
+            throw new IOException("Dataset of job " + checkpoint.jobId + " changed since the checkpoint, not resuming");
+        }
+        System.out.println("Resuming puzzle job " + checkpoint.jobId + " at epoch " + checkpoint.epochsDone + "/" + checkpoint.totalEpochs);
+
+        BufferedImage screenshot = ImageIO.read(new ByteArrayInputStream(job.screenshotPng));
+        train(checkpoint, dataset, screenshot, layer);
+    }
+
+    private void train(TrainingCheckpoint checkpoint, TensorDataset dataset, BufferedImage targetScreenshot, VectorLayer targetLayer) throws Exception {
+        TrainableModel puzzleNet = checkpoint.model;
+
+        // Fresh sample order every epoch, only the index array moves
+        DatasetView[] split = dataset.rows().split(checkpoint.trainRows);
+        DatasetView trainRows = split[0];
+        SplittableRandom shuffle = new SplittableRandom(checkpoint.shuffleSeed);
+        // Replaying the finished epochs' shuffles puts the order and the RNG where the checkpoint left them
+        for (int epoch = 0; epoch < checkpoint.epochsDone; epoch++) {
+            trainRows.shuffle(shuffle);
+        }
+        // Per-layer timings, only with -Dgenann.profile=true
+        LayerProfile profile = null;
+        if (GenAnn.PROFILING && puzzleNet instanceof GenAnn) {
+            GenAnn dense = (GenAnn) puzzleNet;
+            profile = new LayerProfile(dense.getLayerSizes());
+            dense.setProfiler(profile);
+        }
+        double learningRate = checkpoint.learningRate;
+        DatasetView.RowVisitor step = (in, target) -> puzzleNet.train(in, target, learningRate);
+        for(int epoch=checkpoint.epochsDone; epoch<checkpoint.totalEpochs; epoch++) {
+            trainRows.shuffle(shuffle);
+            trainRows.forEach(step);
+
+            if (checkpointEvery > 0 && (epoch + 1) % checkpointEvery == 0 && epoch + 1 < checkpoint.totalEpochs) {
+                checkpoint.epochsDone = epoch + 1;
+                checkpointStore.save(checkpoint);
             }
         }
         
+        if (profile != null) {
+            ((GenAnn) puzzleNet).setProfiler(null);
+            System.out.println("Puzzle training profile (job " + checkpoint.jobId + "):\n" + profile.report());
+        }
+
+        ModelRegistry.ModelVersion published = modelRegistry.publish("puzzle", puzzleNet, false);
+        if (quantize && puzzleNet instanceof GenAnn) {
+            List<double[]> heldOutInputs = new ArrayList<>();
+            List<double[]> heldOutTargets = new ArrayList<>();
+            split[1].forEach((in, target) -> {
+                heldOutInputs.add(in.clone());
+                heldOutTargets.add(target.clone());
+            });
+            QuantizationReport report = quantizationService.quantize(published, heldOutInputs, heldOutTargets);
+            System.out.println("Quantized puzzle model: " + report);
+        }
+
         // 3. SOLVE THE REAL PUZZLE
         // Process the USER'S screenshot
         double[] realInput = imageService.bufferToDownsampledArray(targetScreenshot);
@@ -71,29 +217,38 @@ public class PuzzleService {
         
         // Draw Result
         drawResult(targetScreenshot, targetLayer, prediction);
+        checkpointStore.delete(checkpoint.jobId);
     }
     
+    // SAMPLES + HELD_OUT rendered samples of the layer, labelled with (x, y, rotation)
+    public TensorDataset buildDataset(VectorLayer targetLayer, long dataSeed) throws IOException {
+        // Same shape + seed + render settings = same samples, so a re-solve maps the cached file.
+        String params = "seed=" + dataSeed + ",shape=" + DatasetCache.geometryKey(targetLayer.getVectorShape())
+                + ",res=" + INPUT_RES + ",canvas=" + CANVAS_SIZE + ",scale=" + SAMPLE_SCALE
+                + ",bg=" + BACKGROUND + ",rotSteps=" + ShapeAtlasService.ROTATION_STEPS;
+        return datasetCache.getOrBuild("puzzle", params, SAMPLES + HELD_OUT, INPUT_RES * INPUT_RES, 3, writer -> {
+            SplittableRandom r = new SplittableRandom(dataSeed);
+            for(int i=0; i<SAMPLES + HELD_OUT; i++) {
+                // Random Transform 0.0 to 1.0
+                double tx = r.nextDouble();
+                double ty = r.nextDouble();
+                // +/- 0.5 radians, snapped so the atlas tile matches the label exactly
+                double rot = atlasService.snapRotation((r.nextDouble() - 0.5) * 1.0);
+
+                // Render the "Fake" screenshot
+                double[] imgData = renderSyntheticSample(targetLayer, tx, ty, rot);
+
+                // The Truth: Where was it?
+                writer.add(imgData, new double[]{ tx, ty, rot });
+            }
+        });
+    }
+
     private double[] renderSyntheticSample(VectorLayer layer, double tx, double ty, double rot) {
-        BufferedImage img = new BufferedImage(128, 128, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = img.createGraphics();
-        
-        // Noisy Background (Simulate game environment)
-        g.setColor(Color.DARK_GRAY);
-        g.fillRect(0,0,128,128);
-        
-        // Apply Transform
-        AffineTransform at = new AffineTransform();
-        at.translate(tx * 128, ty * 128);
-        at.rotate(rot);
-        at.scale(2.0, 2.0); // Arbitrary game scale
-        
-        g.setTransform(at);
-        g.setColor(Color.WHITE); // Draw shape in white
-        g.fill(layer.getVectorShape());
-        g.dispose();
-        
-        // Convert to NN Input
-        return imageService.bufferToDownsampledArray(img);
+        // Shape is rasterized once per rotation step, each sample is just a masked copy
+        // onto the dark gray "game" background at the NN input resolution
+        ShapeAtlasService.Tile tile = atlasService.getTile(layer, SAMPLE_SCALE, rot);
+        return atlasService.composite(tile, tx, ty, CANVAS_SIZE, INPUT_RES, BACKGROUND, 1.0);
     }
 
     private void drawResult(BufferedImage original, VectorLayer layer, double[] pred) {
@@ -102,7 +257,7 @@ public class PuzzleService {
         AffineTransform at = new AffineTransform();
         at.translate(pred[0] * original.getWidth(), pred[1] * original.getHeight());
         at.rotate(pred[2]);
-        at.scale(2.0, 2.0); // Must match synthetic scale
+        at.scale(SAMPLE_SCALE, SAMPLE_SCALE); // Must match synthetic scale
         
         g.setTransform(at);
         g.setColor(Color.RED); // Prediction is RED
@@ -110,9 +265,13 @@ public class PuzzleService {
         g.draw(layer.getVectorShape());
         g.dispose();
         
-        try {
-             // Save for Angular to see
-             javax.imageio.ImageIO.write(original, "png", new File("Some/puzzle_solved.png"));
-        } catch (Exception e) {}
+        ioExecutor.execute(() -> {
+            try {
+                // For Angular to see, served from memory at /custom/puzzle_solved.png
+                artifactStore.put(ArtifactStore.CUSTOM, "puzzle_solved.png", imageService.toPng(original));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package com.ai.service;
+
+import com.ai.api.QuantizationReport;
+import com.ai.core.GenAnn;
+import com.ai.core.QuantizedGenAnn;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.List;
+
+@Service
+public class QuantizationService {
+
+    public static final String INT8_SUFFIX = "-int8";
+
+    @Autowired private ModelRegistry modelRegistry;
+
+    // Quantizes the latest version of a model. Returns null if the model doesn't exist.
+    public QuantizationReport quantize(String name, List<double[]> inputs, List<double[]> targets) throws IOException {
+        ModelRegistry.ModelVersion source = modelRegistry.get(name);
+        if (source == null) return null;
+        return quantize(source, inputs, targets);
+    }
+
+    // Quantizes exactly this version, compares it with the double model on the held-out set
+    // and publishes it as <name>-int8
+    public QuantizationReport quantize(ModelRegistry.ModelVersion source, List<double[]> inputs, List<double[]> targets) throws IOException {
+        if (!(source.net instanceof GenAnn)) {
+            throw new IllegalArgumentException("Model " + source.name + " is not a dense GenAnn, only those can be quantized");
+        }
+        if (inputs == null || inputs.isEmpty()) {
+            throw new IllegalArgumentException("Held-out set is empty");
+        }
+        GenAnn full = (GenAnn) source.net;
+        for (double[] input : inputs) {
+            if (input == null || input.length != full.getInputs()) {
+                throw new IllegalArgumentException("Every input needs " + full.getInputs() + " values");
+            }
+        }
+        if (targets != null) {
+            if (targets.size() != inputs.size()) {
+                throw new IllegalArgumentException(targets.size() + " targets for " + inputs.size() + " inputs");
+            }
+            for (double[] target : targets) {
+                if (target == null || target.length != full.getOutputs()) {
+                    throw new IllegalArgumentException("Every target needs " + full.getOutputs() + " values");
+                }
+            }
+        }
+
+        QuantizedGenAnn quantized = new QuantizedGenAnn(full);
+
+        double[][] batch = inputs.toArray(new double[0][]);
+        double[][] expected = full.runBatch(batch);
+        double[][] actual = quantized.runBatch(batch);
+
+        double sumDelta = 0, maxDelta = 0, fullSq = 0, int8Sq = 0;
+        int count = 0;
+        for (int i = 0; i < batch.length; i++) {
+            for (int j = 0; j < expected[i].length; j++) {
+                double delta = Math.abs(expected[i][j] - actual[i][j]);
+                sumDelta += delta;
+                maxDelta = Math.max(maxDelta, delta);
+                if (targets != null) {
+                    double t = targets.get(i)[j];
+                    fullSq += (expected[i][j] - t) * (expected[i][j] - t);
+                    int8Sq += (actual[i][j] - t) * (actual[i][j] - t);
+                }
+                count++;
+            }
+        }
+
+        ModelRegistry.ModelVersion published = modelRegistry.publish(source.name + INT8_SUFFIX, quantized, source.invertedInput);
+
+        QuantizationReport report = new QuantizationReport();
+        report.setModel(published.name);
+        report.setSourceVersion(source.version);
+        report.setQuantizedVersion(published.version);
+        report.setSamples(batch.length);
+        report.setMeanAbsDelta(sumDelta / count);
+        report.setMaxAbsDelta(maxDelta);
+        if (targets != null) {
+            report.setDoubleMse(fullSq / count);
+            report.setInt8Mse(int8Sq / count);
+        }
+        report.setDoubleBytes(full.memoryBytes());
+        report.setInt8Bytes(quantized.memoryBytes());
+        return report;
+    }
+}
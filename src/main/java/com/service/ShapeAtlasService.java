@@ -0,0 +1,163 @@
+package com.ai.service;
+
+import com.ai.entity.VectorLayer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Cache of pre-rasterized shapes. Every (shape, scale, rotation step) is filled with Java2D
+// once, then samples and thumbnails are composited from the cached coverage mask.
+@Service
+public class ShapeAtlasService {
+
+    // Rotations are snapped to 2*PI / ROTATION_STEPS (~2.8 degrees)
+    public static final int ROTATION_STEPS = 128;
+
+    @Value("${atlas.max-bytes:33554432}")
+    private long maxBytes;
+
+    private long usedBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    // Access-ordered, so iteration starts at the least recently used tile
+    private final LinkedHashMap<TileKey, Tile> tiles = new LinkedHashMap<>(64, 0.75f, true);
+
+    private record TileKey(Shape shape, double scale, int rotationStep) {}
+
+    public static class Tile {
+        public final int width, height;
+        public final int originX, originY; // Where the shape's (0,0) lands inside the tile
+        public final byte[] mask;          // Row-major, non-zero = covered
+
+        Tile(int width, int height, int originX, int originY, byte[] mask) {
+            this.width = width;
+            this.height = height;
+            this.originX = originX;
+            this.originY = originY;
+            this.mask = mask;
+        }
+
+        boolean covers(int u, int v) {
+            return u >= 0 && v >= 0 && u < width && v < height && mask[v * width + u] != 0;
+        }
+    }
+
+    // Keeps the sign, -0.1 snaps to -0.098 rather than wrapping to 6.185. Callers use the result
+    // as a training label, only the tile key below is taken modulo a full turn.
+    public double snapRotation(double rotation) {
+        double step = 2 * Math.PI / ROTATION_STEPS;
+        return Math.round(rotation / step) * step;
+    }
+
+    private int rotationStep(double rotation) {
+        return Math.floorMod((int) Math.round(rotation / (2 * Math.PI) * ROTATION_STEPS), ROTATION_STEPS);
+    }
+
+    public Tile getTile(VectorLayer layer, double scale, double rotation) {
+        TileKey key = new TileKey(layer.getVectorShape(), scale, rotationStep(rotation));
+        synchronized (tiles) {
+            Tile cached = tiles.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        // Rasterize outside the lock, two threads racing on the same key just render twice
+        Tile tile = rasterize(key);
+        synchronized (tiles) {
+            Tile previous = tiles.put(key, tile);
+            if (previous != null) usedBytes -= previous.mask.length;
+            usedBytes += tile.mask.length;
+            evict();
+        }
+        return tile;
+    }
+
+    private void evict() {
+        var it = tiles.entrySet().iterator();
+        while (usedBytes > maxBytes && tiles.size() > 1 && it.hasNext()) {
+            Map.Entry<TileKey, Tile> eldest = it.next();
+            usedBytes -= eldest.getValue().mask.length;
+            it.remove();
+        }
+    }
+
+    private Tile rasterize(TileKey key) {
+        AffineTransform at = new AffineTransform();
+        at.rotate(key.rotationStep() * (2 * Math.PI / ROTATION_STEPS));
+        at.scale(key.scale(), key.scale());
+
+        Shape transformed = at.createTransformedShape(key.shape());
+        Rectangle2D bounds = transformed.getBounds2D();
+        int originX = (int) -Math.floor(bounds.getMinX());
+        int originY = (int) -Math.floor(bounds.getMinY());
+        int width = Math.max(1, (int) Math.ceil(bounds.getMaxX()) + originX);
+        int height = Math.max(1, (int) Math.ceil(bounds.getMaxY()) + originY);
+
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = img.createGraphics();
+        g.translate(originX, originY);
+        g.setColor(Color.WHITE);
+        g.fill(transformed);
+        g.dispose();
+
+        byte[] mask = ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+        return new Tile(width, height, originX, originY, mask);
+    }
+
+    // Equivalent of filling the shape on a canvasSize x canvasSize background at (tx, ty) * canvasSize
+    // and point-sampling it down to res x res, without ever touching a BufferedImage.
+    public double[] composite(Tile tile, double tx, double ty, int canvasSize, int res, double background, double foreground) {
+        double[] out = new double[res * res];
+        double step = (double) canvasSize / res;
+        int offsetX = tile.originX - (int) Math.round(tx * canvasSize);
+        int offsetY = tile.originY - (int) Math.round(ty * canvasSize);
+
+        for (int y = 0; y < res; y++) {
+            int v = (int) (y * step) + offsetY;
+            for (int x = 0; x < res; x++) {
+                int u = (int) (x * step) + offsetX;
+                out[y * res + x] = tile.covers(u, v) ? foreground : background;
+            }
+        }
+        return out;
+    }
+
+    // White shape on a transparent size x size square, scaled by the largest power of two that fits
+    public BufferedImage thumbnail(VectorLayer layer, int size) {
+        Rectangle2D bounds = layer.getVectorShape().getBounds2D();
+        double extent = Math.max(1.0, Math.max(bounds.getWidth(), bounds.getHeight()));
+        double scale = Math.pow(2, Math.floor(Math.log(size / extent) / Math.log(2)));
+        Tile tile = getTile(layer, scale, 0);
+
+        BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        int offsetX = (size - tile.width) / 2;
+        int offsetY = (size - tile.height) / 2;
+        for (int v = 0; v < tile.height; v++) {
+            for (int u = 0; u < tile.width; u++) {
+                int x = u + offsetX;
+                int y = v + offsetY;
+                if (tile.covers(u, v) && x >= 0 && y >= 0 && x < size && y < size) {
+                    img.setRGB(x, y, 0xFFFFFFFF);
+                }
+            }
+        }
+        return img;
+    }
+
+    public String getStats() {
+        synchronized (tiles) {
+            return String.format("tiles=%d bytes=%d hits=%d misses=%d", tiles.size(), usedBytes, hits, misses);
+        }
+    }
+}
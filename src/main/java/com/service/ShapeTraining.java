@@ -0,0 +1,179 @@
+package com.ai.service;
+
+import com.ai.core.DatasetView;
+import com.ai.core.GenAnn;
+import com.ai.core.TensorDataset;
+
+import java.awt.*;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.*;
+import java.util.List;
+
+// The arc / custom-shape job without any Spring wiring: generators, the training loop and the
+// evolution GIF export. NeuralNetService hooks it up to the artifact store and model registry,
+// BatchTrainer runs it straight from a config file.
+public class ShapeTraining {
+
+    public static final int SAMPLES = 10;
+    public static final int ARC_OUTPUTS = 5;
+    // Epochs shown in the evolution GIFs, their weights are kept in memory while training
+    public static final List<Integer> GIF_EPOCHS = Arrays.asList(0, 100, 200, 300, 400, 500, 600, 700, 800, 900, 1000);
+
+    // Where generated PNGs / GIFs go, e.g. the ArtifactStore or a folder
+    public interface ArtifactSink {
+        void put(String name, byte[] bytes) throws IOException;
+    }
+
+    public interface EpochListener {
+        void onEpoch(int epoch, GenAnn net) throws Exception;
+    }
+
+    private final ImageService imageService;
+
+    // Generator output: the images and their targets
+    private final List<BufferedImage> groundTruthImages = new ArrayList<>();
+    private final List<double[]> trainingOutputs = new ArrayList<>();
+
+    public ShapeTraining(ImageService imageService) {
+        this.imageService = imageService;
+    }
+
+    // --- GENERATORS ---
+
+    public void generateArcs(long seed, ArtifactSink sink) throws IOException {
+        SplittableRandom r = new SplittableRandom(seed);
+        for (int i = 1; i <= SAMPLES; i++) {
+            double cx = 14 + r.nextInt(100);
+            double cy = 14 + r.nextInt(100);
+            double rad = 20 + r.nextInt(60);
+            double ang1 = r.nextDouble() * 2 * Math.PI;
+            double ang2 = r.nextDouble() * 2 * Math.PI;
+
+            BufferedImage img = imageService.renderArc(cx, cy, rad, Math.min(ang1, ang2), Math.max(ang1, ang2), Color.BLACK);
+            sink.put(String.format("output_%03d.png", i), imageService.toPng(img));
+            groundTruthImages.add(img);
+
+            // Output: 5 parameters normalized
+            double[] out = {cx/128.0, cy/128.0, rad/100.0, Math.min(ang1,ang2)/(2*Math.PI), Math.max(ang1,ang2)/(2*Math.PI)};
+            trainingOutputs.add(out);
+        }
+    }
+
+    public void generateShape(Point2D.Double[] shapePoints, ArtifactSink sink) throws IOException {
+        double[] flatTarget = flatten(shapePoints);
+
+        // Generate 10 sample images (overfitting to this specific shape)
+        // Same drawing every time, render it once
+        BufferedImage img = imageService.renderSome(shapePoints, Color.BLACK);
+        byte[] png = imageService.toPng(img);
+        for (int i = 1; i <= SAMPLES; i++) {
+            sink.put(String.format("output_%03d.png", i), png);
+            groundTruthImages.add(img);
+
+            // Note: Since we want the NN to learn THIS specific shape for any input,
+            // we give it the same target output for all samples.
+            trainingOutputs.add(flatTarget);
+        }
+    }
+
+    // Flatten the points into one single target array for the neural net
+    // Expected format: [x1, y1, x2, y2, x3, y3...]
+    public static double[] flatten(Point2D.Double[] shapePoints) {
+        double[] flatTarget = new double[shapePoints.length * 2];
+        for (int k = 0; k < shapePoints.length; k++) {
+            flatTarget[k*2]     = shapePoints[k].x;
+            flatTarget[k*2 + 1] = shapePoints[k].y;
+        }
+        return flatTarget;
+    }
+
+    public int size() {
+        return groundTruthImages.size();
+    }
+
+    public void writeTo(TensorDataset.Writer writer) throws IOException {
+        for (int i = 0; i < groundTruthImages.size(); i++) {
+            writer.add(imageService.downsample(groundTruthImages.get(i), true), trainingOutputs.get(i));
+        }
+    }
+
+    // Heap dataset, for callers without a DatasetCache
+    public TensorDataset toDataset() {
+        int outputs = trainingOutputs.get(0).length;
+        double[] inputs = new double[size() * 1024];
+        double[] targets = new double[size() * outputs];
+        for (int i = 0; i < size(); i++) {
+            System.arraycopy(imageService.downsample(groundTruthImages.get(i), true), 0, inputs, i * 1024, 1024);
+            System.arraycopy(trainingOutputs.get(i), 0, targets, i * outputs, outputs);
+        }
+        return TensorDataset.fromArrays(1024, inputs, outputs, targets);
+    }
+
+    // --- TRAINING ---
+
+    // Runs epochs 0..lastEpoch inclusive, calling the listener after each one. Returns copies of the
+    // network at the GIF_EPOCHS it passed.
+    public static Map<Integer, GenAnn> train(GenAnn net, TensorDataset dataset, int lastEpoch, double learningRate,
+                                             long shuffleSeed, EpochListener listener) throws Exception {
+        Map<Integer, GenAnn> gifSnapshots = new HashMap<>();
+        DatasetView rows = dataset.rows();
+        SplittableRandom shuffle = new SplittableRandom(shuffleSeed);
+        DatasetView.RowVisitor step = (in, target) -> net.train(in, target, learningRate);
+        for (int epoch = 0; epoch <= lastEpoch; epoch++) {
+            rows.shuffle(shuffle);
+            rows.forEach(step);
+
+            if (GIF_EPOCHS.contains(epoch)) {
+                double[] copy = new double[net.getTotalWeights()];
+                net.copyWeightsTo(copy);
+                gifSnapshots.put(epoch, net.withWeights(copy));
+            }
+            listener.onEpoch(epoch, net);
+        }
+        return gifSnapshots;
+    }
+
+    // --- GIF GENERATION ---
+
+    // One frame per snapshot for every sample, then one GIF per sample
+    public void exportGifs(boolean custom, TensorDataset dataset, Map<Integer, GenAnn> snapshots, ArtifactSink sink) throws IOException {
+        List<Integer> epochs = new ArrayList<>(new TreeSet<>(snapshots.keySet()));
+        for (int i = 0; i < dataset.size(); i++) {
+            String baseNum = String.format("%03d", i + 1);
+            List<BufferedImage> frames = new ArrayList<>();
+
+            double[] input = dataset.input(i);
+
+            for (Integer epoch : epochs) {
+                double[] pred = snapshots.get(epoch).run(input);
+                BufferedImage frame;
+
+                if (custom) {
+                    // Reconstruct Polygon Points
+                    // pred array is [x1, y1, x2, y2 ...]
+                    int numPoints = pred.length / 2;
+                    Point2D.Double[] polyPoints = new Point2D.Double[numPoints];
+                    for(int k=0; k<numPoints; k++) {
+                        polyPoints[k] = new Point2D.Double(pred[k*2], pred[k*2+1]);
+                    }
+                    frame = imageService.renderSome(polyPoints, Color.RED);
+                } else {
+                    // Reconstruct Arc
+                    double cx = pred[0] * 128;
+                    double cy = pred[1] * 128;
+                    double r = pred[2] * 100;
+                    double a1 = pred[3] * 2 * Math.PI;
+                    double a2 = pred[4] * 2 * Math.PI;
+                    frame = imageService.renderArc(cx, cy, r, a1, a2, Color.RED);
+                }
+                sink.put(String.format("pred_%s_epoch_%d.png", baseNum, epoch), imageService.toPng(frame));
+                frames.add(frame);
+            }
+
+            // Same timing as the old "convert -delay 16 -loop 0"
+            sink.put("evolution_" + baseNum + ".gif", imageService.toAnimatedGif(frames, 16));
+        }
+    }
+}
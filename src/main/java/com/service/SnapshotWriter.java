@@ -0,0 +1,71 @@
+package com.ai.service;
+
+import com.ai.core.GenAnn;
+import org.springframework.core.task.TaskExecutor;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+// Per-job snapshot writer. snapshot() only copies the weights into a recycled buffer and
+// hands it to the I/O executor; with every buffer in flight it blocks (backpressure).
+// flush() waits for all pending writes and rethrows the first failure.
+public class SnapshotWriter {
+
+    private final TaskExecutor ioExecutor;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<double[]> freeBuffers = new ConcurrentLinkedQueue<>();
+    private volatile IOException failure;
+
+    public SnapshotWriter(TaskExecutor ioExecutor, int maxInFlight) {
+        this.ioExecutor = ioExecutor;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    public void snapshot(GenAnn net, String path) throws InterruptedException {
+        permits.acquire();
+        double[] buffer = freeBuffers.poll();
+        if (buffer == null || buffer.length != net.getTotalWeights()) {
+            buffer = new double[net.getTotalWeights()];
+        }
+        net.copyWeightsTo(buffer);
+
+        double[] weights = buffer;
+        try {
+            ioExecutor.execute(() -> write(net.withWeights(weights), path, weights));
+        } catch (RuntimeException e) {
+            release(weights);
+            throw e;
+        }
+    }
+
+    private void write(GenAnn copy, String path, double[] buffer) {
+        try {
+            // Temp file + rename so readers never see a half written snapshot
+            Path target = Paths.get(path);
+            Path tmp = Paths.get(path + ".tmp");
+            try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                oos.writeObject(copy);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (failure == null) failure = e;
+        } finally {
+            release(buffer);
+        }
+    }
+
+    private void release(double[] buffer) {
+        freeBuffers.offer(buffer);
+        permits.release();
+    }
+
+    public void flush() throws IOException, InterruptedException {
+        permits.acquire(maxInFlight);
+        permits.release(maxInFlight);
+        if (failure != null) throw failure;
+    }
+}
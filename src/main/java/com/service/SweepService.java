@@ -0,0 +1,367 @@
+package com.ai.service;
+
+import com.ai.api.SweepRequest;
+import com.ai.api.SweepStatus;
+import com.ai.api.SweepTrial;
+import com.ai.core.DatasetView;
+import com.ai.core.GenAnn;
+import com.ai.core.TensorDataset;
+import com.ai.entity.VectorLayer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+// Trains many GenAnn configs against one dataset. Trials run on the training pool, at most
+// maxConcurrent at a time, and all read the same mapped TensorDataset through their own views.
+// Results go to Sweeps/<id>.json after every trial, the best weights are published as a model.
+@Service
+public class SweepService {
+
+    private static final String SWEEP_DIR = "Sweeps";
+    // Median stopping only kicks in once this many other trials reported at the same epoch
+    private static final int MEDIAN_MIN_PEERS = 3;
+
+    @Autowired private PuzzleService puzzleService;
+    @Autowired private NeuralNetService nnService;
+    @Autowired private SwfService swfService;
+    @Autowired private ModelRegistry modelRegistry;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired @Qualifier("trainingExecutor") private ThreadPoolTaskExecutor trainingExecutor;
+    @Autowired @Qualifier("coordinatorExecutor") private TaskExecutor coordinatorExecutor;
+
+    @Value("${sweep.max-concurrent:0}") // 0 = size of the training pool
+    private int defaultMaxConcurrent;
+
+    @Value("${sweep.max-trials:256}")
+    private int maxTrials;
+
+    // Finished sweeps kept in memory for list(); older ones are still readable from Sweeps/
+    @Value("${sweep.keep-finished:32}")
+    private int keepFinished;
+
+    private final Map<String, Sweep> sweeps = new ConcurrentHashMap<>();
+
+    private static class Sweep {
+        final SweepStatus status;
+        final SweepRequest request;
+        // epoch -> validation losses reported there, for the median stopping rule
+        final Map<Integer, List<Double>> lossesAtEpoch = new HashMap<>();
+        // Dropped once published
+        GenAnn bestNet;
+
+        Sweep(SweepStatus status, SweepRequest request) {
+            this.status = status;
+            this.request = request;
+        }
+    }
+
+    public SweepStatus start(SweepRequest request) {
+        if (!List.of("puzzle", "arc", "custom").contains(request.getDataset())) {
+            throw new IllegalArgumentException("Unknown dataset " + request.getDataset());
+        }
+        if (request.getHiddenLayers() == null || request.getHiddenLayers().isEmpty()
+                || request.getLearningRates() == null || request.getLearningRates().isEmpty()
+                || request.getEpochs() == null || request.getEpochs().isEmpty()) {
+            throw new IllegalArgumentException("hiddenLayers, learningRates and epochs need at least one value");
+        }
+        if (request.getValidationFraction() <= 0 || request.getValidationFraction() >= 1) {
+            throw new IllegalArgumentException("validationFraction must be between 0 and 1");
+        }
+
+        long seed = nnService.resolveSeed(request.getSeed());
+        SplittableRandom seeds = new SplittableRandom(seed);
+        List<SweepTrial> trials = "random".equals(request.getMode())
+                ? randomTrials(request, seeds.split())
+                : gridTrials(request);
+        if (trials.size() > maxTrials) {
+            throw new IllegalArgumentException(trials.size() + " trials, the limit is " + maxTrials);
+        }
+
+        int poolSize = trainingExecutor.getMaxPoolSize();
+        int maxConcurrent = request.getMaxConcurrent() > 0 ? request.getMaxConcurrent()
+                : defaultMaxConcurrent > 0 ? defaultMaxConcurrent : poolSize;
+
+        SweepStatus status = new SweepStatus();
+        status.setId(UUID.randomUUID().toString());
+        status.setDataset(request.getDataset());
+        status.setMode("random".equals(request.getMode()) ? "random" : "grid");
+        status.setSeed(seed);
+        status.setMaxConcurrent(Math.min(maxConcurrent, poolSize));
+        status.setTrials(trials);
+        Sweep sweep = new Sweep(status, request);
+        sweeps.put(status.getId(), sweep);
+
+        // The coordinator mostly waits, keep it off the training and I/O threads
+        coordinatorExecutor.execute(() -> run(sweep, seeds));
+        return status;
+    }
+
+    public SweepStatus get(String id) throws IOException {
+        Sweep sweep = sweeps.get(id);
+        if (sweep != null) return sweep.status;
+
+        // Finished in an earlier run of the app
+        Path file = Paths.get(SWEEP_DIR, id + ".json");
+        if (!id.matches("[A-Za-z0-9-]+") || !Files.exists(file)) return null;
+        return objectMapper.readValue(file.toFile(), SweepStatus.class);
+    }
+
+    public List<SweepStatus> list() {
+        List<SweepStatus> all = new ArrayList<>();
+        for (Sweep sweep : sweeps.values()) all.add(sweep.status);
+        all.sort(Comparator.comparing(SweepStatus::getStartedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        return all;
+    }
+
+    private List<SweepTrial> gridTrials(SweepRequest request) {
+        List<SweepTrial> trials = new ArrayList<>();
+        for (int[] hidden : request.getHiddenLayers()) {
+            for (double lr : request.getLearningRates()) {
+                for (int epochs : request.getEpochs()) {
+                    trials.add(trial(trials.size(), hidden, lr, epochs));
+                }
+            }
+        }
+        return trials;
+    }
+
+    private List<SweepTrial> randomTrials(SweepRequest request, SplittableRandom r) {
+        double minLr = Collections.min(request.getLearningRates());
+        double maxLr = Collections.max(request.getLearningRates());
+        List<SweepTrial> trials = new ArrayList<>();
+        for (int i = 0; i < request.getTrials(); i++) {
+            int[] hidden = request.getHiddenLayers().get(r.nextInt(request.getHiddenLayers().size()));
+            int epochs = request.getEpochs().get(r.nextInt(request.getEpochs().size()));
+            double lr = minLr == maxLr ? minLr : Math.exp(Math.log(minLr) + r.nextDouble() * (Math.log(maxLr) - Math.log(minLr)));
+            trials.add(trial(i, hidden, lr, epochs));
+        }
+        return trials;
+    }
+
+    private static SweepTrial trial(int index, int[] hidden, double lr, int epochs) {
+        SweepTrial trial = new SweepTrial();
+        trial.setIndex(index);
+        trial.setHiddenLayers(hidden.clone());
+        trial.setLearningRate(lr);
+        trial.setEpochs(epochs);
+        return trial;
+    }
+
+    private void run(Sweep sweep, SplittableRandom seeds) {
+        SweepStatus status = sweep.status;
+        SweepRequest request = sweep.request;
+        status.setStartedAt(LocalDateTime.now());
+        status.setState("RUNNING");
+        try {
+            long dataSeed = seeds.nextLong();
+            TensorDataset dataset = loadDataset(request, dataSeed);
+
+            DatasetView all = dataset.rows();
+            all.shuffle(seeds.split());
+            DatasetView[] split = all.split(1 - request.getValidationFraction());
+            if (split[0].size() == 0 || split[1].size() == 0) {
+                throw new IllegalArgumentException(dataset.size() + " rows can't be split into train/validation at " + request.getValidationFraction());
+            }
+            status.setTrainRows(split[0].size());
+            status.setValidationRows(split[1].size());
+            persist(status);
+
+            // Drawn up front so a trial's init/shuffle doesn't depend on scheduling order
+            long[] trialSeeds = new long[status.getTrials().size()];
+            for (int i = 0; i < trialSeeds.length; i++) trialSeeds[i] = seeds.nextLong();
+
+            Semaphore permits = new Semaphore(status.getMaxConcurrent());
+            List<CompletableFuture<Void>> running = new ArrayList<>();
+            for (SweepTrial trial : status.getTrials()) {
+                permits.acquire();
+                try {
+                    running.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            runTrial(sweep, trial, split[0], split[1], trialSeeds[trial.getIndex()]);
+                        } finally {
+                            permits.release();
+                        }
+                    }, trainingExecutor));
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                    trial.setState("FAILED");
+                    trial.setStopReason("Training pool is full");
+                }
+            }
+            CompletableFuture.allOf(running.toArray(new CompletableFuture[0])).join();
+
+            if (sweep.bestNet != null) {
+                String name = request.getModelName() != null ? request.getModelName() : request.getDataset() + "-sweep";
+                ModelRegistry.ModelVersion mv = modelRegistry.publish(name, sweep.bestNet, !"puzzle".equals(request.getDataset()));
+                status.setBestModel(mv.name);
+                status.setBestModelVersion(mv.version);
+            }
+            status.setState("COMPLETED");
+        } catch (Exception e) {
+            e.printStackTrace();
+            status.setState("FAILED");
+            status.setError(e.getMessage());
+        }
+        status.setFinishedAt(LocalDateTime.now());
+        persist(status);
+        System.out.println("Sweep " + status.getId() + " " + status.getState() + ", best trial " + status.getBestTrial()
+                + " (val MSE " + status.getBestValLoss() + ")");
+
+        // Only the status is needed from here on, and that's in Sweeps/<id>.json too
+        synchronized (sweep) {
+            sweep.bestNet = null;
+        }
+        synchronized (sweep.lossesAtEpoch) {
+            sweep.lossesAtEpoch.clear();
+        }
+        trimFinished();
+    }
+
+    private synchronized void trimFinished() {
+        List<Sweep> finished = new ArrayList<>();
+        for (Sweep sweep : sweeps.values()) {
+            if (sweep.status.getFinishedAt() != null) finished.add(sweep);
+        }
+        if (finished.size() <= keepFinished) return;
+        finished.sort(Comparator.comparing(s -> s.status.getFinishedAt()));
+        for (Sweep sweep : finished.subList(0, finished.size() - keepFinished)) {
+            sweeps.remove(sweep.status.getId());
+        }
+    }
+
+    private TensorDataset loadDataset(SweepRequest request, long dataSeed) throws IOException {
+        if ("puzzle".equals(request.getDataset())) {
+            VectorLayer layer = swfService.findLayer(request.getUploadId(), request.getLayerId());
+            if (layer == null) {
+                throw new IllegalArgumentException("Unknown or expired upload/layer: " + request.getUploadId() + "/" + request.getLayerId());
+            }
+            return puzzleService.buildDataset(layer, dataSeed);
+        }
+        return nnService.prepareDataset("custom".equals(request.getDataset()), dataSeed);
+    }
+
+    private void runTrial(Sweep sweep, SweepTrial trial, DatasetView trainRows, DatasetView valRows, long seed) {
+        long start = System.nanoTime();
+        trial.setState("RUNNING");
+        try {
+            SplittableRandom seeds = new SplittableRandom(seed);
+            TensorDataset data = trainRows.getData();
+            int[] hidden = trial.getHiddenLayers();
+            int[] layerSizes = new int[hidden.length + 2];
+            layerSizes[0] = data.inputSize();
+            System.arraycopy(hidden, 0, layerSizes, 1, hidden.length);
+            layerSizes[layerSizes.length - 1] = data.targetSize();
+            GenAnn net = new GenAnn(layerSizes, seeds.nextLong());
+
+            // Own views: the shared ones only hand out the index arrays
+            DatasetView train = trainRows.copy();
+            DatasetView val = valRows.copy();
+            SplittableRandom shuffle = seeds.split();
+            double lr = trial.getLearningRate();
+            DatasetView.RowVisitor step = (in, target) -> net.train(in, target, lr);
+
+            int evalEvery = Math.max(1, sweep.request.getEvalEvery());
+            double best = Double.POSITIVE_INFINITY;
+            double[] bestWeights = new double[net.getTotalWeights()];
+            int sinceBest = 0;
+            String stopReason = null;
+
+            for (int epoch = 1; epoch <= trial.getEpochs(); epoch++) {
+                train.shuffle(shuffle);
+                train.forEach(step);
+                trial.setEpochsRun(epoch);
+                if (epoch % evalEvery != 0 && epoch != trial.getEpochs()) continue;
+
+                double loss = validationLoss(net, val);
+                if (loss < best) {
+                    best = loss;
+                    net.copyWeightsTo(bestWeights);
+                    trial.setBestValLoss(loss);
+                    trial.setBestEpoch(epoch);
+                    sinceBest = 0;
+                } else if (++sinceBest >= sweep.request.getPatience()) {
+                    stopReason = "patience";
+                }
+                // Give every trial a quarter of its epochs before comparing it against the others
+                if (stopReason == null && worseThanMedian(sweep, epoch, loss) && epoch >= trial.getEpochs() / 4) {
+                    stopReason = "median";
+                }
+                if (stopReason != null) break;
+            }
+
+            trial.setTrainingMs((System.nanoTime() - start) / 1_000_000);
+            trial.setStopReason(stopReason);
+            trial.setState(stopReason != null ? "STOPPED" : "COMPLETED");
+            synchronized (sweep) {
+                SweepStatus status = sweep.status;
+                if (status.getBestValLoss() == null || best < status.getBestValLoss()) {
+                    status.setBestValLoss(best);
+                    status.setBestTrial(trial.getIndex());
+                    sweep.bestNet = net.withWeights(bestWeights);
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            trial.setTrainingMs((System.nanoTime() - start) / 1_000_000);
+            trial.setState("FAILED");
+            trial.setStopReason(e.getMessage());
+        }
+        persist(sweep.status);
+    }
+
+    private static double validationLoss(GenAnn net, DatasetView val) {
+        double[] sum = new double[1];
+        val.forEach((in, target) -> {
+            double[] out = net.run(in);
+            for (int j = 0; j < out.length; j++) {
+                double d = out[j] - target[j];
+                sum[0] += d * d;
+            }
+        });
+        return sum[0] / ((double) val.size() * val.targetSize());
+    }
+
+    // Records the loss and reports whether it's worse than the median of the other trials at this epoch
+    private static boolean worseThanMedian(Sweep sweep, int epoch, double loss) {
+        synchronized (sweep.lossesAtEpoch) {
+            List<Double> others = sweep.lossesAtEpoch.computeIfAbsent(epoch, e -> new ArrayList<>());
+            boolean worse = false;
+            if (others.size() >= MEDIAN_MIN_PEERS) {
+                List<Double> sorted = new ArrayList<>(others);
+                Collections.sort(sorted);
+                int n = sorted.size();
+                double median = n % 2 == 1 ? sorted.get(n / 2) : (sorted.get(n / 2 - 1) + sorted.get(n / 2)) / 2;
+                worse = loss > median;
+            }
+            others.add(loss);
+            return worse;
+        }
+    }
+
+    private void persist(SweepStatus status) {
+        synchronized (status) {
+            try {
+                Path dir = Paths.get(SWEEP_DIR);
+                Files.createDirectories(dir);
+                Path tmp = dir.resolve(status.getId() + ".json.tmp");
+                objectMapper.writerWithDefaultPrettyPrinter().writeValue(tmp.toFile(), status);
+                Files.move(tmp, dir.resolve(status.getId() + ".json"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
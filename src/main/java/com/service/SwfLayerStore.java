@@ -0,0 +1,102 @@
+package com.ai.service;
+
+import com.ai.api.SwfSprite;
+import com.ai.entity.VectorLayer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Parsed SWF uploads, keyed by upload ID and then character ID.
+// Bounded by total estimated bytes (LRU) and by idle time (TTL).
+@Component
+public class SwfLayerStore {
+
+    @Value("${swf.store.max-bytes:268435456}")
+    private long maxBytes;
+
+    @Value("${swf.store.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    private long usedBytes = 0;
+
+    // Access-ordered, so iteration starts at the least recently used upload
+    private final LinkedHashMap<String, Upload> uploads = new LinkedHashMap<>(16, 0.75f, true);
+
+    public static class Upload {
+        public final String uploadId;
+        public final Map<Integer, VectorLayer> layers;
+        public final Map<Integer, SwfSprite> sprites;
+        public final long bytes;
+        private long lastAccess;
+
+        public Upload(String uploadId, Map<Integer, VectorLayer> layers, Map<Integer, SwfSprite> sprites, long bytes) {
+            this.uploadId = uploadId;
+            this.layers = layers;
+            this.sprites = sprites;
+            this.bytes = bytes;
+            this.lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    public void put(Upload upload) {
+        synchronized (uploads) {
+            Upload previous = uploads.put(upload.uploadId, upload);
+            if (previous != null) usedBytes -= previous.bytes;
+            usedBytes += upload.bytes;
+            evict(System.currentTimeMillis());
+        }
+        System.out.println("Stored upload " + upload.uploadId + " (" + upload.bytes / 1024 + " KB), store: " + getStats());
+    }
+
+    public Upload get(String uploadId) {
+        if (uploadId == null) return null;
+        synchronized (uploads) {
+            long now = System.currentTimeMillis();
+            evict(now);
+            Upload upload = uploads.get(uploadId);
+            if (upload != null) upload.lastAccess = now;
+            return upload;
+        }
+    }
+
+    public VectorLayer getLayer(String uploadId, int charId) {
+        Upload upload = get(uploadId);
+        return upload != null ? upload.layers.get(charId) : null;
+    }
+
+    public SwfSprite getSprite(String uploadId, int spriteId) {
+        Upload upload = get(uploadId);
+        return upload != null ? upload.sprites.get(spriteId) : null;
+    }
+
+    public void remove(String uploadId) {
+        synchronized (uploads) {
+            Upload removed = uploads.remove(uploadId);
+            if (removed != null) usedBytes -= removed.bytes;
+        }
+    }
+
+    // Caller holds the lock. Drops expired uploads, then LRU ones until under budget
+    // (the most recent upload always survives, even if it alone exceeds the budget).
+    private void evict(long now) {
+        long ttlMillis = ttlMinutes * 60_000;
+        Iterator<Upload> it = uploads.values().iterator();
+        while (it.hasNext()) {
+            Upload upload = it.next();
+            boolean expired = now - upload.lastAccess > ttlMillis;
+            boolean overBudget = usedBytes > maxBytes && uploads.size() > 1;
+            if (!expired && !overBudget) break;
+            usedBytes -= upload.bytes;
+            it.remove();
+        }
+    }
+
+    public String getStats() {
+        synchronized (uploads) {
+            return String.format("uploads=%d bytes=%d/%d", uploads.size(), usedBytes, maxBytes);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.ai.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+// Admission control for SWF parsing. FFDec inflates the whole movie into one array and builds
+// its tag graph on top of it, so the cost of a parse is known up front from the uncompressed
+// length (see inflatedLength). Each parse reserves heapFactor * that length out of a global
+// budget and takes one of maxConcurrent slots. Uploads wait up to queueTimeoutMs for both,
+// anything bigger than the per-request budget is refused without waiting.
+@Service
+public class SwfParseLimiter {
+
+    @Value("${swf.parse.max-concurrent:2}")
+    private int maxConcurrent;
+
+    @Value("${swf.parse.memory-budget-bytes:536870912}")
+    private long memoryBudgetBytes;
+
+    @Value("${swf.parse.max-request-bytes:268435456}")
+    private long maxRequestBytes;
+
+    // Heap per uncompressed SWF byte: the inflated copy plus FFDec's tags and our commands
+    @Value("${swf.parse.heap-factor:4}")
+    private int heapFactor;
+
+    @Value("${swf.parse.queue-timeout-ms:10000}")
+    private long queueTimeoutMs;
+
+    // LZMA (ZWS) can't be inflated with the JDK, so those are assumed to grow up to this much
+    @Value("${swf.parse.lzma-max-ratio:8}")
+    private int lzmaMaxRatio;
+
+    private Semaphore slots;
+    private Semaphore budgetKb; // Semaphore permits are ints, so the budget is counted in KiB
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejectedTooLarge = new AtomicLong();
+    private final AtomicLong rejectedBusy = new AtomicLong();
+    private final AtomicLong waitedNanos = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        slots = new Semaphore(Math.max(1, maxConcurrent), true);
+        budgetKb = new Semaphore((int) Math.min(Integer.MAX_VALUE, memoryBudgetBytes / 1024), true);
+    }
+
+    // The parse would need more heap than the limits ever allow (413), unlike busy (503) or not a SWF (400)
+    public static class TooLargeException extends RuntimeException {
+        public TooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    public class Reservation implements AutoCloseable {
+        private final int kb;
+
+        private Reservation(int kb) {
+            this.kb = kb;
+        }
+
+        @Override
+        public void close() {
+            budgetKb.release(kb);
+            slots.release();
+        }
+    }
+
+    // Uncompressed size to admit the parse with. The header's length is whatever the client wrote,
+    // so it's only taken as a lower bound:
+    //  - FWS: the file is the movie, its size is the answer
+    //  - CWS: zlib is inflated into a small buffer and counted, giving up as soon as it's past
+    //    what acquire() would accept anyway (so a zip bomb costs at most that much CPU)
+    //  - ZWS: compressed size * lzmaMaxRatio
+    // IllegalArgumentException if it isn't a SWF or the zlib stream is broken.
+    public long inflatedLength(Path swf) throws IOException {
+        byte[] header = new byte[8];
+        try (InputStream in = Files.newInputStream(swf)) {
+            if (in.readNBytes(header, 0, 8) < 8) throw new IllegalArgumentException("Not a SWF file (too short)");
+        }
+        char sig = (char) header[0];
+        if ((sig != 'F' && sig != 'C' && sig != 'Z') || header[1] != 'W' || header[2] != 'S') {
+            throw new IllegalArgumentException("Not a SWF file");
+        }
+        long declared = ByteBuffer.wrap(header, 4, 4).order(ByteOrder.LITTLE_ENDIAN).getInt() & 0xFFFFFFFFL;
+        long size = Files.size(swf);
+        switch (sig) {
+            case 'F':
+                return Math.max(declared, size);
+            case 'Z':
+                return Math.max(declared, size * lzmaMaxRatio);
+            default:
+                return Math.max(declared, 8 + countInflated(swf, Math.min(maxRequestBytes, memoryBudgetBytes) / heapFactor));
+        }
+    }
+
+    private static long countInflated(Path swf, long limit) throws IOException {
+        byte[] buffer = new byte[1 << 16];
+        long total = 0;
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(swf), 1 << 16)) {
+            raw.skipNBytes(8); // header is stored uncompressed
+            try (InputStream in = new InflaterInputStream(raw)) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    total += n;
+                    if (total > limit) return total; // acquire() refuses it, no need to read further
+                }
+            }
+        } catch (ZipException e) {
+            throw new IllegalArgumentException("Broken SWF compression: " + e.getMessage());
+        }
+        return total;
+    }
+
+    // TooLargeException if the parse could never fit, RejectedExecutionException if the
+    // budget or the slots stayed taken for longer than the queue timeout
+    public Reservation acquire(long uncompressedBytes) throws InterruptedException {
+        long estimate = uncompressedBytes * heapFactor;
+        if (estimate > maxRequestBytes || estimate > memoryBudgetBytes) {
+            rejectedTooLarge.incrementAndGet();
+            throw new TooLargeException("SWF inflates to " + uncompressedBytes + " bytes, needs ~" + estimate
+                    + " bytes of heap to parse, limit is " + Math.min(maxRequestBytes, memoryBudgetBytes));
+        }
+        int kb = (int) Math.max(1, (estimate + 1023) / 1024);
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+        if (!slots.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+            rejectedBusy.incrementAndGet();
+            throw new RejectedExecutionException("All " + maxConcurrent + " SWF parse slots busy");
+        }
+        try {
+            if (!budgetKb.tryAcquire(kb, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                rejectedBusy.incrementAndGet();
+                throw new RejectedExecutionException("SWF parse memory budget exhausted");
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+        admitted.incrementAndGet();
+        waitedNanos.addAndGet(System.nanoTime() - start);
+        return new Reservation(kb);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("freeSlots", slots.availablePermits());
+        stats.put("freeBudgetBytes", (long) budgetKb.availablePermits() * 1024);
+        stats.put("admitted", admitted.get());
+        stats.put("rejectedTooLarge", rejectedTooLarge.get());
+        stats.put("rejectedBusy", rejectedBusy.get());
+        stats.put("avgWaitMs", admitted.get() > 0 ? waitedNanos.get() / 1e6 / admitted.get() : 0.0);
+        return stats;
+    }
+}
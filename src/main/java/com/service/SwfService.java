@@ -4,13 +4,23 @@ import com.ai.api.SwfResponse;
 import com.ai.api.SwfShape;
 import com.ai.api.VectorCommand;
 import com.ai.entity.VectorLayer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
+import java.util.UUID;
 import java.awt.geom.GeneralPath;
 
 // JPEXS Core Imports
@@ -39,24 +49,60 @@ import com.jpexs.decompiler.flash.exporters.commonshape.Matrix;
 
 import com.ai.api.SwfInstance;
 import com.ai.api.SwfSprite;
+import com.ai.api.SwfTimelineOp;
 
 @Service
 public class SwfService {
 
-    private List<VectorLayer> loadedLayers = new ArrayList<>();
+    // Frames between full PLACE snapshots in an encoded sprite timeline
+    private static final int KEYFRAME_INTERVAL = 30;
 
-    public SwfResponse parseSwf(MultipartFile file) {
-        System.out.println("--- Parsing SWF: " + file.getOriginalFilename() + " ---");
+    // Rough per-object heap costs used for store accounting
+    private static final int PATH_SEGMENT_BYTES = 24;
+    private static final int MATRIX_BYTES = 64;
+    private static final int OP_BYTES = 32;
+
+    @Autowired private SwfLayerStore layerStore;
+    @Autowired private SwfParseLimiter parseLimiter;
+
+    // Default path simplification tolerance in pixels, 0 = commands exactly as stored in the SWF
+    @Value("${swf.simplify.tolerance:0}")
+    private double defaultTolerance;
+
+    // The upload is spooled to a temp file first and parsed from there, so the compressed bytes
+    // never sit in the heap next to FFDec's inflated copy. Admission goes through SwfParseLimiter.
+    // tolerance: simplification in pixels for this upload (see PathSimplifier), null = swf.simplify.tolerance
+    public SwfResponse parseSwf(MultipartFile file, Double tolerance) throws IOException, InterruptedException {
+        double lod = tolerance != null ? tolerance : defaultTolerance;
+        Path spool = Files.createTempFile("swf-upload-", ".swf");
+        try {
+            file.transferTo(spool);
+            long uncompressed = parseLimiter.inflatedLength(spool);
+            try (SwfParseLimiter.Reservation reservation = parseLimiter.acquire(uncompressed)) {
+                return parseSwf(spool, file.getOriginalFilename(), lod);
+            }
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    // Throws IllegalArgumentException if FFDec can't read the file; nothing is stored then
+    private SwfResponse parseSwf(Path swfFile, String originalName, double tolerance) throws InterruptedException {
+        System.out.println("--- Parsing SWF: " + originalName + " ---");
         SwfResponse response = new SwfResponse();
-        response.setName(file.getOriginalFilename());
+        response.setName(originalName);
         
         List<SwfShape> extractedShapes = new ArrayList<>();
         List<SwfSprite> extractedSprites = new ArrayList<>(); 
         Map<Integer, String> symbolMap = new HashMap<>();
         
-        loadedLayers.clear();
+        String uploadId = UUID.randomUUID().toString();
+        Map<Integer, VectorLayer> layers = new LinkedHashMap<>();
+        Map<Integer, SwfSprite> sprites = new HashMap<>();
+        long bytes = 0;
+        long exportedCommands = 0;
         
-        try (InputStream is = file.getInputStream()) {
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(swfFile), 1 << 16)) {
             SWF swf = new SWF(is, null, false);
             
             for (Tag tag : swf.getTags()) {
@@ -72,20 +118,26 @@ public class SwfService {
                     AngularShapeExporter exporter = new AngularShapeExporter(swf, shape);
                     exporter.export(); 
                     
-                    List<VectorCommand> shapeCommands = exporter.getCommands();
+                    // Same simplified outline for the canvas and for the puzzle rasterizer
+                    List<VectorCommand> shapeCommands = PathSimplifier.simplify(exporter.getCommands(), tolerance);
+                    exportedCommands += exporter.getCommands().size();
                     
                     extractedShapes.add(new SwfShape(shapeTag.getCharacterId(), shapeCommands));
                     
                     VectorLayer layer = new VectorLayer();
                     layer.setName("Char_" + shapeTag.getCharacterId());
                     layer.setVectorShape(reconstructPath(shapeCommands));
-                    loadedLayers.add(layer);
+                    layers.put(shapeTag.getCharacterId(), layer);
+                    bytes += (long) shapeCommands.size() * PATH_SEGMENT_BYTES;
                 }
                 
                 // --- SPRITES (MovieClips) ---
                 else if (tag instanceof DefineSpriteTag) {
                     DefineSpriteTag spriteTag = (DefineSpriteTag) tag;
-                    extractedSprites.add(parseTimeline(spriteTag));
+                    SwfSprite sprite = parseTimeline(spriteTag);
+                    extractedSprites.add(sprite);
+                    sprites.put(sprite.getSpriteId(), sprite);
+                    bytes += estimateBytes(sprite);
                 }
                 
                 // --- SYMBOLS (Names) ---
@@ -97,11 +149,20 @@ public class SwfService {
             }
             
             System.out.println("Extraction Complete. Shapes: " + extractedShapes.size() + ", Sprites: " + extractedSprites.size());
+            if (tolerance > 0) {
+                long kept = extractedShapes.stream().mapToLong(shape -> shape.getCommands().size()).sum();
+                System.out.println("Simplified at " + tolerance + " px: " + exportedCommands + " -> " + kept + " commands");
+            }
 
         } catch (Exception e) {
+            if (e instanceof InterruptedException) throw (InterruptedException) e;
             e.printStackTrace();
+            throw new IllegalArgumentException("Corrupt SWF " + originalName + ": " + e.getMessage(), e);
         }
 
+        layerStore.put(new SwfLayerStore.Upload(uploadId, layers, sprites, bytes));
+
+        response.setUploadId(uploadId);
         response.setShapes(extractedShapes);
         response.setSprites(extractedSprites);
         response.setSymbolMap(symbolMap);
@@ -113,32 +174,78 @@ public class SwfService {
         swfSprite.setSpriteId(spriteTag.getCharacterId());
         swfSprite.setFrameCount(spriteTag.getFrameCount());
         
-        List<List<SwfInstance>> allFrames = new ArrayList<>();
+        // Identical matrices are stored once and referenced by index
+        List<double[]> matrices = new ArrayList<>();
+        Map<MatrixKey, Integer> matrixIndex = new HashMap<>();
+        Map<Integer, List<SwfTimelineOp>> keyframes = new HashMap<>();
+        List<List<SwfTimelineOp>> deltas = new ArrayList<>();
+        
+        // depth -> what is currently placed there
+        TreeMap<Integer, SwfTimelineOp> previous = new TreeMap<>();
         Timeline timeline = spriteTag.getTimeline();
         
+        int frameIndex = 0;
         for (Frame frameObj : timeline.getFrames()) {
-            List<SwfInstance> currentFrameInstances = new ArrayList<>();
+            TreeMap<Integer, SwfTimelineOp> current = new TreeMap<>();
+            List<SwfTimelineOp> delta = new ArrayList<>();
+            
             for (Map.Entry<Integer, DepthState> entry : frameObj.layers.entrySet()) {
                 int depth = entry.getKey();
                 DepthState state = entry.getValue();
                 
                 if (state.isVisible && state.characterId != -1) {
-                    SwfInstance inst = new SwfInstance();
-                    inst.setCharId(state.characterId);
-                    inst.setDepth(depth);
-                    if (state.matrix != null) {
-                        inst.setMatrix(convertMatrix(state.matrix));
+                    int matrix = internMatrix(state.matrix, matrices, matrixIndex);
+                    SwfTimelineOp before = previous.get(depth);
+                    
+                    if (before != null && before.getCharId() == state.characterId && before.getMatrix() == matrix) {
+                        current.put(depth, before); // Unchanged, no delta
+                    } else {
+                        String type = (before != null && before.getCharId() == state.characterId) ? "MOVE" : "PLACE";
+                        SwfTimelineOp op = new SwfTimelineOp(type, depth, state.characterId, matrix);
+                        current.put(depth, op);
+                        delta.add(op);
                     }
-                    currentFrameInstances.add(inst);
                 }
             }
-            allFrames.add(currentFrameInstances);
+            
+            for (Integer depth : previous.keySet()) {
+                if (!current.containsKey(depth)) {
+                    delta.add(new SwfTimelineOp("REMOVE", depth, -1, -1));
+                }
+            }
+            
+            if (frameIndex % KEYFRAME_INTERVAL == 0) {
+                List<SwfTimelineOp> placed = new ArrayList<>();
+                for (SwfTimelineOp op : current.values()) {
+                    placed.add(new SwfTimelineOp("PLACE", op.getDepth(), op.getCharId(), op.getMatrix()));
+                }
+                keyframes.put(frameIndex, placed);
+            }
+            
+            // Frame 0 is fully described by its keyframe
+            deltas.add(frameIndex == 0 || delta.isEmpty() ? Collections.emptyList() : delta);
+            previous = current;
+            frameIndex++;
         }
         
-        swfSprite.setFrames(allFrames);
+        swfSprite.setMatrices(matrices);
+        swfSprite.setKeyframes(keyframes);
+        swfSprite.setDeltas(deltas);
         return swfSprite;
     }
 
+    private int internMatrix(MATRIX m, List<double[]> matrices, Map<MatrixKey, Integer> matrixIndex) {
+        if (m == null) return -1;
+        double[] values = convertMatrix(m);
+        MatrixKey key = new MatrixKey(values[0], values[1], values[2], values[3], values[4], values[5]);
+        return matrixIndex.computeIfAbsent(key, k -> {
+            matrices.add(values);
+            return matrices.size() - 1;
+        });
+    }
+
+    private record MatrixKey(double a, double b, double c, double d, double tx, double ty) {}
+
     private double[] convertMatrix(MATRIX m) {
         if (m == null) return null;
         return new double[] {
@@ -147,8 +254,67 @@ public class SwfService {
         };
     }
 
-    public List<VectorLayer> loadSwfLayers() {
-        return new ArrayList<>(loadedLayers);
+    // Rebuilds frames [from, from + count) by replaying deltas from the nearest keyframe.
+    // Unchanged instances are the same object across frames and share the matrix pool.
+    // count < 0 means "until the end", null means unknown sprite.
+    public List<List<SwfInstance>> getSpriteFrames(String uploadId, int spriteId, int from, int count) {
+        SwfSprite sprite = layerStore.getSprite(uploadId, spriteId);
+        if (sprite == null) return null;
+        
+        List<List<SwfInstance>> frames = new ArrayList<>();
+        int total = sprite.getDeltas().size();
+        int start = Math.max(0, from);
+        int end = count < 0 ? total : Math.min(total, start + count);
+        if (start >= end) return frames;
+        
+        int keyframe = (start / KEYFRAME_INTERVAL) * KEYFRAME_INTERVAL;
+        TreeMap<Integer, SwfInstance> state = new TreeMap<>();
+        for (SwfTimelineOp op : sprite.getKeyframes().get(keyframe)) {
+            applyOp(state, op, sprite.getMatrices());
+        }
+        
+        for (int f = keyframe; f < end; f++) {
+            if (f > keyframe) {
+                for (SwfTimelineOp op : sprite.getDeltas().get(f)) {
+                    applyOp(state, op, sprite.getMatrices());
+                }
+            }
+            if (f >= start) {
+                frames.add(new ArrayList<>(state.values()));
+            }
+        }
+        return frames;
+    }
+
+    private void applyOp(Map<Integer, SwfInstance> state, SwfTimelineOp op, List<double[]> matrices) {
+        if ("REMOVE".equals(op.getType())) {
+            state.remove(op.getDepth());
+            return;
+        }
+        SwfInstance inst = new SwfInstance();
+        inst.setCharId(op.getCharId());
+        inst.setDepth(op.getDepth());
+        if (op.getMatrix() >= 0) {
+            inst.setMatrix(matrices.get(op.getMatrix()));
+        }
+        state.put(op.getDepth(), inst);
+    }
+
+    // charId < 0 picks the first shape of the upload
+    public VectorLayer findLayer(String uploadId, int charId) {
+        if (charId >= 0) {
+            return layerStore.getLayer(uploadId, charId);
+        }
+        SwfLayerStore.Upload upload = layerStore.get(uploadId);
+        if (upload == null || upload.layers.isEmpty()) return null;
+        return upload.layers.values().iterator().next();
+    }
+
+    private long estimateBytes(SwfSprite sprite) {
+        long ops = 0;
+        for (List<SwfTimelineOp> keyframe : sprite.getKeyframes().values()) ops += keyframe.size();
+        for (List<SwfTimelineOp> delta : sprite.getDeltas()) ops += delta.size();
+        return (long) sprite.getMatrices().size() * MATRIX_BYTES + ops * OP_BYTES;
     }
 
     private java.awt.Shape reconstructPath(List<VectorCommand> cmds) {